@@ -93,8 +93,8 @@ LatticeViewer.prototype = {
 		this.scale = {"x": scaleX, "y": scaleY};
 	},
 	
-	//adds a new point to the lattice visualization
-	addPoint: function(descriptor){
+	//calculates the position of a point element from the point descriptor
+	locate: function(descriptor){
 		var cvs = this.canvas.get(0);
 		var scale = this.get_scale();
 		var offset = this.get_originPoint();
@@ -112,6 +112,15 @@ LatticeViewer.prototype = {
 		
 		if(left < cvs.offsetLeft)
 			left = cvs.offsetLeft + 10;
+		
+		return {"top": top, "left": left};
+	},
+	
+	//adds a new point to the lattice visualization
+	addPoint: function(descriptor){
+		var position = this.locate(descriptor);
+		var top = position.top;
+		var left = position.left;
 				
 		//creates a new point element
 		var pointElement = $("<span></span>")
@@ -159,7 +168,6 @@ LatticeViewer.prototype = {
 	//shows the lattice points
 	show: function(){
 		var self = this;
-		var ctx = this.get_context();
 		
 		if(this.gridEnabled)
 			this.showGrid();
@@ -172,7 +180,39 @@ LatticeViewer.prototype = {
 			self.addPoint(descriptor);
 		});
 		
-		//draws lines
+		this.showLines();
+	},
+	
+	//moves the points whose x coordinates have changed and draws the lines again,
+	//the moves are an object mapping the point names to the new x coordinates
+	update: function(moves){
+		var self = this;
+		var cvs = this.canvas.get(0);
+		
+		if(!this.points)
+			return;
+		
+		$.each(moves, function(name, x){
+			var point = self.points.findByName(name);
+			
+			if(point)
+				point.move(x, self.locate($.extend({}, point.get_descriptor(), {"x": x})));
+		});
+		
+		//clears the canvas
+		cvs.width = cvs.width;
+		
+		if(this.gridEnabled)
+			this.showGrid();
+		
+		this.showLines();
+	},
+	
+	//draws the lines between the points and their dependents
+	showLines: function(){
+		var self = this;
+		var ctx = this.get_context();
+		
 		$.each(this.points.get_array(), function(index, srcPoint){
 			var srcPosition = srcPoint.get_position();
 			
@@ -225,6 +265,17 @@ LatticePoint.prototype = {
 		return this.pointDescriptor.dependents;
 	},
 	
+	//gets the point descriptor
+	get_descriptor: function(){
+		return this.pointDescriptor;
+	},
+	
+	//moves the point element to a new x coordinate
+	move: function(x, position){
+		this.pointDescriptor.x = x;
+		this.pointElement.css({"top": position.top + "px", "left": position.left + "px"});
+	},
+	
 	//gets the point position
 	get_position: function(){
 		var offset = this.canvas.offset();
@@ -278,5 +329,92 @@ LatticePointCollection.prototype = {
 	}
 };
 
+//decodes the binary lattice format created by the LatticeBinaryFormatter
+//into the same point descriptors as the json format
+function decodeLatticeBinary(buffer){
+	var view = new DataView(buffer);
+	
+	//checks the signature "LATB"
+	if(view.getUint8(0) != 76 || view.getUint8(1) != 65 || view.getUint8(2) != 84 || view.getUint8(3) != 66)
+		return null;
+	
+	var count = view.getUint16(6, true);
+	var scale = view.getFloat32(12, true);
+	//calculates the offsets of the arrays following the header
+	var names = 16;
+	var xs = names + 2 * count;
+	var ys = xs + 2 * count;
+	var flags = ys + 2 * count;
+	var offsets = flags + ((count + 3) & ~3);
+	var targets = offsets + 4 * (count + 1);
+	var points = new Array(count);
+	
+	for(var i = 0; i < count; i++){
+		points[i] = {
+			"name": String(view.getInt16(names + 2 * i, true)),
+			"markable": view.getUint8(flags + i) == 1,
+			"x": view.getInt16(xs + 2 * i, true) / scale,
+			"y": view.getInt16(ys + 2 * i, true) / scale,
+			"dependents": []
+		};
+	}
+	
+	//resolves the dependents stored as positions of the points
+	for(var i = 0; i < count; i++){
+		var from = view.getUint32(offsets + 4 * i, true);
+		var to = view.getUint32(offsets + 4 * (i + 1), true);
+		
+		for(var j = from; j < to; j++)
+			points[i].dependents.push(points[view.getUint16(targets + 2 * j, true)].name);
+	}
+	
+	return points;
+}
 
+//downloads a lattice in the binary format
+function loadLatticeBinary(url, success, error){
+	var request = new XMLHttpRequest();
+	
+	request.open("GET", url, true);
+	request.responseType = "arraybuffer";
+	request.onload = function(){
+		var points = request.status == 200 ? decodeLatticeBinary(request.response) : null;
+		
+		if(points)
+			success(points);
+		else
+			error();
+	};
+	request.onerror = error;
+	request.send(null);
+}
 
+//downloads a lattice progressively as server-sent events: the initial points are
+//passed to the success handler and the moved points of each iteration to the update handler
+function loadLatticeProgress(url, success, update, error){
+	var source = new EventSource(url);
+	var done = false;
+	
+	source.addEventListener("lattice", function(event){
+		success(JSON.parse(event.data));
+	}, false);
+	
+	source.addEventListener("delta", function(event){
+		update(JSON.parse(event.data).x);
+	}, false);
+	
+	source.addEventListener("done", function(event){
+		done = true;
+		source.close();
+	}, false);
+	
+	//the event source reconnects by itself, so the stream is closed on the first error
+	source.onerror = function(){
+		source.close();
+		
+		if(!done)
+			error();
+	};
+	
+	return source;
+}
@@ -1,3 +1,6 @@
+//the dimension from which on the lattices are shown progressively
+var progressiveDimension = 10;
+
 //creates a new lattice viewer and disposes the old
 function createLatticeViewer(dimension, number){
 	var params = "";
@@ -9,24 +12,53 @@ function createLatticeViewer(dimension, number){
 	//disposes the previous lattice viewer object
 	if(lattice)
 		lattice.dispose();	
+	//stops the progress of the previous lattice
+	if(window["latticeSource"])
+		window["latticeSource"].close();
+	//shows the large lattices while they are adjusted
+	if(window.EventSource && params && parseInt(dimension) >= progressiveDimension){
+		window["latticeSource"] = loadLatticeProgress("../LatticeServlet" + params + "&progress=true", 
+			showLatticeViewer, updateLatticeViewer, onLatticeError);
+		return;
+	}
+	//uses the compact binary format if the browser is able to read it
+	if(window.ArrayBuffer && window.DataView){
+		loadLatticeBinary("../LatticeServlet" + params + (params ? "&" : "?") + "format=binary", 
+			showLatticeViewer, onLatticeError);
+		return;
+	}
 	//creates a new request for downloading the data	
 	$.ajax({
 		  url: "../LatticeServlet" + params,
-		  success: function(points) {
-			var viewer = new LatticeViewer($("#cvsLattice"), $("#cvsHolder"));			
-			viewer.set_data(points);
-			viewer.set_gridEnabled(true);
-			viewer.set_pointCssClass("circle");
-			viewer.set_markablePointCssClass("markable-circle");
-			viewer.set_scale(50, 50);			
-			viewer.show(); 
-		  },
-		  error: function(){
-			  alert("Lattice cannot be loaded.");
-		  }
+		  success: showLatticeViewer,
+		  error: onLatticeError
 	});
 }
 
+//shows the downloaded lattice points in a new lattice viewer
+function showLatticeViewer(points){
+	var viewer = new LatticeViewer($("#cvsLattice"), $("#cvsHolder"));			
+	viewer.set_data(points);
+	viewer.set_gridEnabled(true);
+	viewer.set_pointCssClass("circle");
+	viewer.set_markablePointCssClass("markable-circle");
+	viewer.set_scale(50, 50);			
+	viewer.show(); 
+}
+
+//moves the points of the current lattice viewer
+function updateLatticeViewer(moves){
+	var lattice = window["lattice"];
+	
+	if(lattice)
+		lattice.update(moves);
+}
+
+//handles a lattice which cannot be downloaded
+function onLatticeError(){
+	alert("Lattice cannot be loaded.");
+}
+
 //handles the button click
 function onLoadLatticeClick(){
 	createLatticeViewer($('#ddlDimension').val(), $('#txtInput').val());
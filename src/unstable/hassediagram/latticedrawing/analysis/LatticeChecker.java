@@ -0,0 +1,194 @@
+package unstable.hassediagram.latticedrawing.analysis;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This class checks the structure of a lattice using the reachability index of its order.
+ * The elements are numbered along a linear extension, so the join of two elements is the first bit
+ * of the intersection of their up-sets and the meet is the last bit of the intersection of their down-sets.
+ * Only the joins and meets of covering pairs are needed, so the checks take a few word operations per pair of covers:
+ * <pre>
+ * {@code
+ * 	semimodular          a and b cover x implies a join b covers a and b
+ * 	lower semimodular    x covers a and b implies a and b cover a meet b
+ * 	modular              semimodular and lower semimodular, no N5 sublattice
+ * 	distributive         modular and the count of join irreducibles is the height, no M3 sublattice
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2011-01-05
+ */
+public class LatticeChecker {
+	private int size;
+	private LatticeReachability reachability;
+	private int height = -1;
+	private Boolean semimodular;
+	private Boolean lowerSemimodular;
+
+	/**
+	 * Constructor
+	 *
+	 * @param lattice which will be checked.
+	 */
+	public LatticeChecker(Lattice lattice){
+		this(lattice.getReachability());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param reachability is the reachability index of the lattice.
+	 */
+	public LatticeChecker(LatticeReachability reachability){
+		this.reachability = reachability;
+		this.size = reachability.getSize();
+	}
+
+	/**
+	 * Gets the count of elements.
+	 *
+	 * @return The size of the lattice.
+	 */
+	public int getSize(){
+		return this.size;
+	}
+
+	/**
+	 * Gets the count of elements having a single lower cover.
+	 *
+	 * @return The count of join irreducible elements.
+	 */
+	public int getJoinIrreducibles(){
+		int count = 0;
+
+		for(int i = 0; i < this.size; i++){
+			if(this.reachability.getLowerCovers(i).length == 1)
+				count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Gets the count of elements having a single upper cover.
+	 *
+	 * @return The count of meet irreducible elements.
+	 */
+	public int getMeetIrreducibles(){
+		int count = 0;
+
+		for(int i = 0; i < this.size; i++){
+			if(this.reachability.getUpperCovers(i).length == 1)
+				count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Gets the count of covers of the longest chain.
+	 *
+	 * @return The height of the lattice.
+	 */
+	public int getHeight(){
+		if(this.height >= 0)
+			return this.height;
+
+		int[] heights = new int[this.size];
+		int height = 0;
+
+		//the lower covers of an element precede it in the linear extension
+		for(int i = 0; i < this.size; i++){
+			for(int child : this.reachability.getLowerCovers(i))
+				heights[i] = Math.max(heights[i], heights[child] + 1);
+
+			height = Math.max(height, heights[i]);
+		}
+
+		this.height = height;
+
+		return height;
+	}
+
+	/**
+	 * Returns true if the join of two upper covers of an element covers both of them.
+	 *
+	 * @return True whether the lattice is (upper) semimodular.
+	 */
+	public Boolean isSemimodular(){
+		if(this.semimodular == null)
+			this.semimodular = this.checkCovers(true);
+
+		return this.semimodular;
+	}
+
+	/**
+	 * Returns true if the meet of two lower covers of an element is covered by both of them.
+	 *
+	 * @return True whether the lattice is lower semimodular.
+	 */
+	public Boolean isLowerSemimodular(){
+		if(this.lowerSemimodular == null)
+			this.lowerSemimodular = this.checkCovers(false);
+
+		return this.lowerSemimodular;
+	}
+
+	/**
+	 * Returns true if the lattice contains no N5 sublattice.
+	 * A lattice of finite length is modular exactly if it is semimodular and lower semimodular.
+	 *
+	 * @return True whether the lattice is modular.
+	 */
+	public Boolean isModular(){
+		return this.isSemimodular() && this.isLowerSemimodular();
+	}
+
+	/**
+	 * Returns true if the lattice contains neither an N5 nor an M3 sublattice.
+	 * The height of a modular lattice never exceeds its count of join irreducibles,
+	 * both are equal exactly if the lattice is distributive.
+	 *
+	 * @return True whether the lattice is distributive.
+	 */
+	public Boolean isDistributive(){
+		return this.isModular() && this.getJoinIrreducibles() == this.getHeight();
+	}
+
+	/**
+	 * Checks all pairs of covers of each element.
+	 *
+	 * @param up is true for the semimodular condition on the upper covers, false for the lower covers.
+	 * @return True whether the condition holds for all pairs.
+	 */
+	private Boolean checkCovers(Boolean up){
+		LatticeReachability r = this.reachability;
+
+		for(int x = 0; x < this.size; x++){
+			int[] neighbours = up ? r.getUpperCovers(x) : r.getLowerCovers(x);
+
+			for(int i = 0; i < neighbours.length; i++){
+				int a = neighbours[i];
+
+				for(int j = i + 1; j < neighbours.length; j++){
+					int b = neighbours[j];
+
+					if(up){
+						int join = r.join(a, b);
+
+						if(!r.covers(a, join) || !r.covers(b, join))
+							return false;
+					} else {
+						int meet = r.meet(a, b);
+
+						if(!r.covers(meet, a) || !r.covers(meet, b))
+							return false;
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+}
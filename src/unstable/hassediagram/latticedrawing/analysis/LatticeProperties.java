@@ -0,0 +1,145 @@
+package unstable.hassediagram.latticedrawing.analysis;
+
+import java.util.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This class represents the structural properties of a lattice.
+ * The order is taken from the reachability index of the lattice and the lattice conditions from a lattice checker,
+ * the width is given by Dilworth's theorem as the count of elements minus a maximum matching of the strict order.
+ * <pre>
+ * {@code
+ * 	height          count of covers of the longest chain
+ * 	width           size of the largest antichain
+ * 	covers          count of edges of the hasse diagram
+ * 	marked atoms    marked elements covering the minimal element
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-12-29
+ */
+public class LatticeProperties {
+	private int size;
+	private LatticeReachability reachability;
+	private LatticeChecker checker;
+	private int[] values;
+	private long markedSet;
+
+	/**
+	 * Constructor
+	 *
+	 * @param lattice whose properties will be calculated.
+	 */
+	public LatticeProperties(Lattice lattice){
+		LatticeElementStorage storage = lattice.getStorage();
+		int covers = 0;
+
+		this.size = storage.size();
+		this.values = new int[LatticeProperty.values().length];
+		this.reachability = lattice.getReachability();
+		this.checker = new LatticeChecker(this.reachability);
+
+		for(int i = 0; i < this.size; i++)
+			covers += this.reachability.getLowerCovers(i).length;
+
+		int marked = 0;
+		int markedAtoms = 0;
+
+		for(int i = 0; i < this.size; i++){
+			LatticeElement e = storage.get(i);
+
+			if(!e.getMarkable())
+				continue;
+
+			int name = (int)e.getName().charAt(0) - 97;
+
+			marked++;
+
+			if(name >= 0 && name < 64)
+				this.markedSet |= 1L << name;
+
+			//an atom covers the minimal element, which has got no lower covers
+			int[] lower = this.reachability.getLowerCovers(this.reachability.getPosition(i));
+
+			if(lower.length == 1 && this.reachability.getLowerCovers(lower[0]).length == 0)
+				markedAtoms++;
+		}
+
+		this.values[LatticeProperty.Dimension.ordinal()] = this.size;
+		this.values[LatticeProperty.Height.ordinal()] = this.checker.getHeight();
+		this.values[LatticeProperty.Width.ordinal()] = this.getWidth();
+		this.values[LatticeProperty.Covers.ordinal()] = covers;
+		this.values[LatticeProperty.Distributive.ordinal()] = this.checker.isDistributive() ? 1 : 0;
+		this.values[LatticeProperty.Modular.ordinal()] = this.checker.isModular() ? 1 : 0;
+		this.values[LatticeProperty.Semimodular.ordinal()] = this.checker.isSemimodular() ? 1 : 0;
+		this.values[LatticeProperty.JoinIrreducibles.ordinal()] = this.checker.getJoinIrreducibles();
+		this.values[LatticeProperty.MeetIrreducibles.ordinal()] = this.checker.getMeetIrreducibles();
+		this.values[LatticeProperty.Marked.ordinal()] = marked;
+		this.values[LatticeProperty.MarkedAtoms.ordinal()] = markedAtoms;
+	}
+
+	/**
+	 * Gets the value of a property.
+	 *
+	 * @param property is the structural property.
+	 * @return The value of the property, 1 or 0 for a boolean property.
+	 */
+	public int get(LatticeProperty property){
+		return this.values[property.ordinal()];
+	}
+
+	/**
+	 * Gets the marked elements as bits, the element a is the lowest bit.
+	 *
+	 * @return The marked set of the first 64 elements.
+	 */
+	public long getMarkedSet(){
+		return this.markedSet;
+	}
+
+	/**
+	 * Gets the size of the largest antichain, which is the count of elements minus a maximum matching
+	 * between the elements and the elements strictly above them.
+	 *
+	 * @return The width of the lattice.
+	 */
+	private int getWidth(){
+		int[] matched = new int[this.size];
+		int matching = 0;
+
+		Arrays.fill(matched, -1);
+
+		for(int i = 0; i < this.size; i++){
+			if(this.augment(i, new boolean[this.size], matched))
+				matching++;
+		}
+
+		return this.size - matching;
+	}
+
+	/**
+	 * Searches an augmenting path of the matching.
+	 *
+	 * @param i is the element looking for a partner above it.
+	 * @param visited marks the partners visited by the search.
+	 * @param matched is the element matched to each partner or -1.
+	 * @return True if the matching has been enlarged.
+	 */
+	private boolean augment(int i, boolean[] visited, int[] matched){
+		for(int j = 0; j < this.size; j++){
+			if(j == i || visited[j] || !this.reachability.leq(i, j))
+				continue;
+
+			visited[j] = true;
+
+			if(matched[j] < 0 || this.augment(matched[j], visited, matched)){
+				matched[j] = i;
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
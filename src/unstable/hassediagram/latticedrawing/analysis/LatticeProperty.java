@@ -0,0 +1,46 @@
+package unstable.hassediagram.latticedrawing.analysis;
+
+/**
+ * This enum represents the structural properties of a lattice stored in the property index.
+ * A boolean property has got the value 1 for true and 0 for false.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-12-29
+ */
+public enum LatticeProperty {
+	Dimension,
+	Height,
+	Width,
+	Covers,
+	Distributive,
+	Modular,
+	Semimodular,
+	JoinIrreducibles,
+	MeetIrreducibles,
+	Marked,
+	MarkedAtoms;
+
+	/**
+	 * Returns true if the property is a condition having the value 1 or 0.
+	 *
+	 * @return True whether the property is a boolean property.
+	 */
+	public Boolean isBoolean(){
+		return this == Distributive || this == Modular || this == Semimodular;
+	}
+
+	/**
+	 * Finds a property by its name ignoring the case.
+	 *
+	 * @param value is the name of the property.
+	 * @return The property or null if no property has got the name.
+	 */
+	public static LatticeProperty parse(String value){
+		for(LatticeProperty property : LatticeProperty.values()){
+			if(property.name().equalsIgnoreCase(value))
+				return property;
+		}
+
+		return null;
+	}
+}
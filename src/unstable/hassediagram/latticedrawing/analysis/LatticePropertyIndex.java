@@ -0,0 +1,344 @@
+package unstable.hassediagram.latticedrawing.analysis;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+import unstable.hassediagram.latticedrawing.storage.*;
+import unstable.hassediagram.latticedrawing.utils.*;
+
+/**
+ * This class represents the structural properties of all lattices of the corpus, one row per lattice.
+ * The properties are stored column by column, each column with the smallest width holding all of its values,
+ * so the whole corpus fits into a few hundred kilobytes. After loading, every value of a property gets a bitmap
+ * of the rows having this value, so a query is a union of bitmaps for each range and an intersection across the ranges.
+ * <pre>
+ * {@code
+ * 	LATP  version  rows  columns
+ * 	number column                     i32 per row
+ * 	property, width, column           1, 2 or 4 bytes per row for each property
+ * 	marked set column                 i64 per row, the element a is the lowest bit
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-12-29
+ */
+public class LatticePropertyIndex {
+	public static final int magic = 0x4c415450;
+	public static final short version = 2;
+	public static final String fileName = "lattices.columns";
+
+	private int rows;
+	private int[] numbers;
+	private int[][] columns;
+	private long[] markedSets;
+	private BitSet[][] bitmaps;
+
+	/**
+	 * Constructor
+	 *
+	 * @param numbers are the numbers of the lattices.
+	 * @param columns are the values of each property, indexed by the ordinal of the property.
+	 * @param markedSets are the marked sets of the lattices.
+	 */
+	public LatticePropertyIndex(int[] numbers, int[][] columns, long[] markedSets){
+		this.rows = numbers.length;
+		this.numbers = numbers;
+		this.columns = columns;
+		this.markedSets = markedSets;
+		this.bitmaps = new BitSet[columns.length][];
+
+		for(int p = 0; p < columns.length; p++){
+			int max = 0;
+
+			for(int value : columns[p])
+				max = Math.max(max, value);
+
+			this.bitmaps[p] = new BitSet[max + 1];
+
+			for(int value = 0; value <= max; value++)
+				this.bitmaps[p][value] = new BitSet(this.rows);
+
+			for(int row = 0; row < this.rows; row++)
+				this.bitmaps[p][columns[p][row]].set(row);
+		}
+	}
+
+	/**
+	 * Gets the count of indexed lattices.
+	 *
+	 * @return The count of rows.
+	 */
+	public int getCount(){
+		return this.rows;
+	}
+
+	/**
+	 * Gets the dimension of a lattice.
+	 *
+	 * @param row is the row of the lattice.
+	 * @return The dimension of the lattice.
+	 */
+	public int getDimension(int row){
+		return this.columns[LatticeProperty.Dimension.ordinal()][row];
+	}
+
+	/**
+	 * Gets the number of a lattice within its dimension.
+	 *
+	 * @param row is the row of the lattice.
+	 * @return The number of the lattice.
+	 */
+	public int getNumber(int row){
+		return this.numbers[row];
+	}
+
+	/**
+	 * Gets a property of a lattice.
+	 *
+	 * @param row is the row of the lattice.
+	 * @param property is the structural property.
+	 * @return The value of the property.
+	 */
+	public int getValue(int row, LatticeProperty property){
+		return this.columns[property.ordinal()][row];
+	}
+
+	/**
+	 * Gets the marked set of a lattice.
+	 *
+	 * @param row is the row of the lattice.
+	 * @return The marked elements as bits, the element a is the lowest bit.
+	 */
+	public long getMarkedSet(int row){
+		return this.markedSets[row];
+	}
+
+	/**
+	 * Selects the lattices whose property lies within a range.
+	 *
+	 * @param property is the structural property.
+	 * @param min is the smallest value or null if the range is open to the bottom.
+	 * @param max is the largest value or null if the range is open to the top.
+	 * @return The rows of the selected lattices.
+	 */
+	public BitSet select(LatticeProperty property, Integer min, Integer max){
+		BitSet[] values = this.bitmaps[property.ordinal()];
+		BitSet result = new BitSet(this.rows);
+		int from = min != null ? Math.max(0, min) : 0;
+		int to = max != null ? Math.min(values.length - 1, max) : values.length - 1;
+
+		for(int value = from; value <= to; value++)
+			result.or(values[value]);
+
+		return result;
+	}
+
+	/**
+	 * Selects the lattices matching all ranges.
+	 *
+	 * @param ranges map the properties to the smallest and the largest value, either of them may be null.
+	 * @return The rows of the selected lattices.
+	 */
+	public BitSet query(Map<LatticeProperty, Integer[]> ranges){
+		BitSet result = new BitSet(this.rows);
+		result.set(0, this.rows);
+
+		for(Map.Entry<LatticeProperty, Integer[]> range : ranges.entrySet())
+			result.and(this.select(range.getKey(), range.getValue()[0], range.getValue()[1]));
+
+		return result;
+	}
+
+	/**
+	 * Writes the columns to a file.
+	 *
+	 * @param file is the file receiving the index.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void write(File file) throws IOException {
+		DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+		try {
+			stream.writeInt(magic);
+			stream.writeShort(version);
+			stream.writeInt(this.rows);
+			stream.writeInt(this.columns.length);
+
+			for(int row = 0; row < this.rows; row++)
+				stream.writeInt(this.numbers[row]);
+
+			for(int p = 0; p < this.columns.length; p++){
+				int width = this.bitmaps[p].length <= 0x100 ? 1 : this.bitmaps[p].length <= 0x10000 ? 2 : 4;
+
+				stream.writeByte(p);
+				stream.writeByte(width);
+
+				for(int row = 0; row < this.rows; row++){
+					if(width == 1)
+						stream.writeByte(this.columns[p][row]);
+					else if(width == 2)
+						stream.writeShort(this.columns[p][row]);
+					else
+						stream.writeInt(this.columns[p][row]);
+				}
+			}
+
+			for(int row = 0; row < this.rows; row++)
+				stream.writeLong(this.markedSets[row]);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Reads the columns from a stream.
+	 *
+	 * @param input is the stream containing the index.
+	 * @return The index.
+	 * @throws IOException if the stream cannot be read or has got a wrong format.
+	 */
+	public static LatticePropertyIndex read(InputStream input) throws IOException {
+		DataInputStream stream = new DataInputStream(new BufferedInputStream(input));
+
+		if(stream.readInt() != magic || stream.readShort() != version)
+			throw new IOException("Unknown format of the property index");
+
+		int rows = stream.readInt();
+		int count = stream.readInt();
+		int[] numbers = new int[rows];
+		int[][] columns = new int[LatticeProperty.values().length][];
+		long[] markedSets = new long[rows];
+
+		if(count != columns.length)
+			throw new IOException("The property index has got " + count + " instead of " + columns.length + " properties");
+
+		for(int row = 0; row < rows; row++)
+			numbers[row] = stream.readInt();
+
+		for(int i = 0; i < count; i++){
+			int p = stream.readUnsignedByte();
+			int width = stream.readUnsignedByte();
+
+			columns[p] = new int[rows];
+
+			for(int row = 0; row < rows; row++)
+				columns[p][row] = width == 1 ? stream.readUnsignedByte() : width == 2 ? stream.readUnsignedShort() : stream.readInt();
+		}
+
+		for(int row = 0; row < rows; row++)
+			markedSets[row] = stream.readLong();
+
+		return new LatticePropertyIndex(numbers, columns, markedSets);
+	}
+
+	/**
+	 * Reads the columns from a file.
+	 *
+	 * @param file is the file containing the index.
+	 * @return The index.
+	 * @throws IOException if the file cannot be read or has got a wrong format.
+	 */
+	public static LatticePropertyIndex read(File file) throws IOException {
+		InputStream stream = new FileInputStream(file);
+
+		try {
+			return read(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Calculates the properties of all lattices of the archives of a range of dimensions.
+	 *
+	 * @param resources is the directory containing the archives of the dimensions.
+	 * @param from is the first dimension.
+	 * @param to is the last dimension.
+	 * @param pool is the pool calculating the properties.
+	 * @return The index.
+	 * @throws IOException if an archive cannot be read.
+	 */
+	public static LatticePropertyIndex build(File resources, Integer from, Integer to, ForkJoinPool pool) throws IOException {
+		final Vector<LatticeArchive> archives = new Vector<LatticeArchive>();
+		Vector<Integer> numbers = new Vector<Integer>();
+		final Vector<Integer> owners = new Vector<Integer>();
+
+		try {
+			for(int dimension = from; dimension <= to; dimension++){
+				File file = new File(resources, "dim" + dimension + LatticeArchive.extension);
+
+				if(!file.isFile())
+					continue;
+
+				LatticeArchive archive = new LatticeArchive(file);
+				archives.add(archive);
+
+				for(int number = 0; number < archive.getCount(); number++){
+					if(archive.contains(number)){
+						numbers.add(number);
+						owners.add(archives.size() - 1);
+					}
+				}
+			}
+
+			int rows = numbers.size();
+			final int[] numberColumn = new int[rows];
+			final int[][] columns = new int[LatticeProperty.values().length][rows];
+			final long[] markedSets = new long[rows];
+
+			for(int row = 0; row < rows; row++)
+				numberColumn[row] = numbers.get(row);
+
+			//the properties of each row are calculated on all cores
+			pool.invoke(new RangeTask(new IRangeDelegate(){
+				public void compute(int row) throws IOException {
+					Lattice lattice = archives.get(owners.get(row)).load(numberColumn[row]);
+					LatticeProperties properties = new LatticeProperties(lattice);
+
+					for(LatticeProperty property : LatticeProperty.values())
+						columns[property.ordinal()][row] = properties.get(property);
+
+					markedSets[row] = properties.getMarkedSet();
+				}
+			}, 0, rows));
+
+			return new LatticePropertyIndex(numberColumn, columns, markedSets);
+		} finally {
+			for(LatticeArchive archive : archives)
+				archive.close();
+		}
+	}
+
+	/**
+	 * Builds the property index of the dimensions given by the arguments.
+	 *
+	 * @param args are the resource directory, the first and the last dimension and the index file.
+	 * @throws IOException if a file cannot be read or written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 3){
+			System.err.println("LatticePropertyIndex <resources> <first dimension> <last dimension> [index file]");
+			System.exit(1);
+		}
+
+		File resources = new File(args[0]);
+		File file = args.length > 3 ? new File(args[3]) : new File(resources, fileName);
+		ForkJoinPool pool = new ForkJoinPool();
+		long start = System.nanoTime();
+		LatticePropertyIndex index;
+
+		try {
+			index = build(resources, Integer.parseInt(args[1]), Integer.parseInt(args[2]), pool);
+		} finally {
+			pool.shutdown();
+		}
+
+		index.write(file);
+
+		System.out.println(String.format("%d lattices in %.1f s on %d threads, %d bytes",
+				index.getCount(), (System.nanoTime() - start) / 1e9, pool.getParallelism(), file.length()));
+	}
+}
@@ -2,8 +2,10 @@ package unstable.hassediagram.latticedrawing.core;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import unstable.hassediagram.latticedrawing.formatters.*;
+import unstable.hassediagram.latticedrawing.layouts.*;
 import unstable.hassediagram.latticedrawing.utils.*;
 
 /**
@@ -19,6 +21,13 @@ import unstable.hassediagram.latticedrawing.utils.*;
 public class Lattice implements ILatticeElementDependency {
 	private Relation relation;
 	private Boolean initialized = false;
+	private Boolean adjusted = false;
+	private Boolean partial = false;
+	private LatticeDeadline deadline;
+	private ILatticeLayoutListener layoutListener;
+	private LatticeCanonicalForm canonicalForm;
+	private LatticeOperations operations;
+	private LatticeReachability reachability;
 	private LatticeElementCollection elements; 
 	private LatticeElementStorage storage;
 	private LatticeElementLevelCollection levels;
@@ -44,13 +53,169 @@ public class Lattice implements ILatticeElementDependency {
 	
 	/**
 	 * Gets the level collection with the lattice elements.
+	 * The lattice is adjusted by the standard collision layout if no layout has been applied yet,
+	 * another layout is chosen by calling adjust(layout) first.
 	 * 
 	 * @return The collection of all levels describing to which level does a lattice element belong.
 	 */
 	public LatticeElementLevelCollection getLevels(){
+		if(!this.adjusted)
+			this.adjust(LatticeLayoutType.Collision);
+		
 		return this.levels;
 	}
 		
+	/**
+	 * Gets the deadline for adjusting the lattice and for calculating its canonical form.
+	 * 
+	 * @return The deadline or null if the adjustment has no time limit.
+	 */
+	public LatticeDeadline getDeadline(){
+		return this.deadline;
+	}
+	
+	/**
+	 * Sets the deadline for adjusting the lattice and for calculating its canonical form.
+	 * 
+	 * @param deadline is the deadline or null if the adjustment has no time limit.
+	 */
+	public void setDeadline(LatticeDeadline deadline){
+		this.deadline = deadline;
+	}
+	
+	/**
+	 * Gets the listener observing the layouts.
+	 * 
+	 * @return The layout listener or null if no listener has been set.
+	 */
+	public ILatticeLayoutListener getLayoutListener(){
+		return this.layoutListener;
+	}
+	
+	/**
+	 * Sets the listener observing the layouts, for instance to show the positions progressively.
+	 * 
+	 * @param layoutListener is the layout listener or null.
+	 */
+	public void setLayoutListener(ILatticeLayoutListener layoutListener){
+		this.layoutListener = layoutListener;
+	}
+	
+	/**
+	 * Notifies the layout listener that a layout has moved the lattice elements.
+	 * 
+	 * @param iteration is the count of finished iterations, zero for the initial positions.
+	 */
+	public void notifyLayoutListener(Integer iteration){
+		if(this.layoutListener != null)
+			this.layoutListener.arranged(this, iteration);
+	}
+	
+	/**
+	 * Returns true if the deadline of the lattice has been reached.
+	 * A layout checking it stops arranging, so the lattice is marked as partially adjusted.
+	 * 
+	 * @return True whether the adjustment should stop.
+	 */
+	public Boolean isExpired(){
+		if(this.deadline == null || !this.deadline.isExpired())
+			return false;
+		
+		this.partial = true;
+		return true;
+	}
+	
+	/**
+	 * Returns true if a layout has been stopped by the deadline, 
+	 * so the lattice elements keep the best positions calculated until then.
+	 * 
+	 * @return True whether the lattice has been adjusted partially.
+	 */
+	public Boolean isPartial(){
+		return this.partial;
+	}
+	
+	/**
+	 * Gets the canonical labelling of the lattice, which is calculated at the first access.
+	 * 
+	 * @return The canonical form shared by all isomorphic lattices.
+	 * @throws CancellationException if the deadline has been reached before the canonical form was calculated.
+	 */
+	public LatticeCanonicalForm getCanonicalForm(){
+		if(this.canonicalForm == null)
+			this.canonicalForm = new LatticeCanonicalForm(this);
+		
+		return this.canonicalForm;
+	}
+	
+	/**
+	 * Gets the transitive closure of the hasse diagram, which is calculated at the first access.
+	 * 
+	 * @return The reachability index answering order queries in constant time.
+	 */
+	public LatticeReachability getReachability(){
+		if(this.reachability == null)
+			this.reachability = new LatticeReachability(this);
+		
+		return this.reachability;
+	}
+	
+	/**
+	 * Gets the join and the meet of the lattice, which are calculated at the first access.
+	 * 
+	 * @return The operations addressing the elements by their positions in the storage.
+	 */
+	public LatticeOperations getOperations(){
+		if(this.operations == null)
+			this.operations = new LatticeOperations(this);
+		
+		return this.operations;
+	}
+	
+	/**
+	 * Gets the least upper bound of two lattice elements.
+	 * 
+	 * @param a is the first lattice element.
+	 * @param b is the second lattice element.
+	 * @return The join of both lattice elements.
+	 */
+	public LatticeElement join(LatticeElement a, LatticeElement b){
+		return this.getOperations().join(a, b);
+	}
+	
+	/**
+	 * Gets the greatest lower bound of two lattice elements.
+	 * 
+	 * @param a is the first lattice element.
+	 * @param b is the second lattice element.
+	 * @return The meet of both lattice elements.
+	 */
+	public LatticeElement meet(LatticeElement a, LatticeElement b){
+		return this.getOperations().meet(a, b);
+	}
+	
+	/**
+	 * Gets the joins of many pairs of lattice elements given by their positions in the storage.
+	 * 
+	 * @param a are the positions of the first lattice elements.
+	 * @param b are the positions of the second lattice elements.
+	 * @param result receives the position of the join of each pair.
+	 */
+	public void join(int[] a, int[] b, int[] result){
+		this.getOperations().join(a, b, result);
+	}
+	
+	/**
+	 * Gets the meets of many pairs of lattice elements given by their positions in the storage.
+	 * 
+	 * @param a are the positions of the first lattice elements.
+	 * @param b are the positions of the second lattice elements.
+	 * @param result receives the position of the meet of each pair.
+	 */
+	public void meet(int[] a, int[] b, int[] result){
+		this.getOperations().meet(a, b, result);
+	}
+	
 	/**
 	 * Gets the relation defining the lattice structure.
 	 * 
@@ -165,7 +330,31 @@ public class Lattice implements ILatticeElementDependency {
 		
 		return null;
 	}
-	
+
+	/**
+	 * Creates a new lattice from a single interpretation of a file containing many interpretations.
+	 * The interpretation is found through the offset index of the file, which is built at the first access.
+	 *
+	 * @param filePath is the path to a file containing concatenated interpretations, like the output of Mace4.
+	 * @param number of the interpretation.
+	 *
+	 * @return A new lattice object or null if the file does not contain the interpretation.
+	 */
+	public static Lattice loadFromFile(String filePath, Integer number){
+		try{
+			File file = new File(filePath);
+			String text = LatticeOffsetIndex.open(file).read(file, number);
+
+			if(text != null)
+				return Lattice.loadFromText(text);
+		}
+		catch(Exception e){
+			e.printStackTrace();
+		}
+
+		return null;
+	}
+
 	/**
 	 * Creates a new lattice defined as a boolean matrix stored in a string.
 	 * <pre>
@@ -185,6 +374,18 @@ public class Lattice implements ILatticeElementDependency {
 		return Lattice.load(new LatticeParser(text).parse());
 	}
 	
+	/**
+	 * Creates a new lattice defined as a boolean matrix without parsing any text.
+	 * 
+	 * @param matrix contains the partitial order of the lattice elements.
+	 * @param markingMatrix is a single row describing which element should be marked.
+	 * 
+	 * @return A new lattice object.
+	 */
+	public static Lattice loadFromMatrix(RelationMatrix matrix, RelationMatrix markingMatrix){
+		return Lattice.load(new LatticeParser(matrix, markingMatrix).parse());
+	}
+	
 	/**
 	 * Saves the lattice structure in the specified format.
 	 * 
@@ -206,11 +407,56 @@ public class Lattice implements ILatticeElementDependency {
 	public String saveAs(ILatticeFormatter formatter){
 		return formatter.Format();
 	}
+	
+	/**
+	 * Writes the lattice structure in the specified format to a stream without building it in memory.
+	 * 
+	 * @param format is the type to which the current lattice structure can be converted.
+	 * @param stream is the output stream receiving the current lattice in the specified format.
+	 * @throws IOException if the stream cannot be written.
+	 */
+	public void saveTo(LatticeFormatType format, OutputStream stream) throws IOException {
+		this.saveTo(LatticeFormatFactory.CreateFormatter(this, format), stream);
+	}
+	
+	/**
+	 * Writes the lattice structure in another format to a stream.
+	 * 
+	 * @param formatter is an object implementing ILatticeStreamFormatter that describes an additional format type.
+	 * @param stream is the output stream receiving the current lattice in the specified format.
+	 * @throws IOException if the stream cannot be written.
+	 */
+	public void saveTo(ILatticeStreamFormatter formatter, OutputStream stream) throws IOException {
+		formatter.Format(stream);
+	}
 			
 	/**
 	 * Builds a lattice visualization corresponding to a standard hasse diagram.
 	 */
 	public void adjust(){
+		this.adjust(LatticeLayoutType.Collision);
+	}
+	
+	/**
+	 * Builds a lattice visualization by using the specified layout.
+	 * 
+	 * @param layout is the type of the layout arranging the lattice elements.
+	 */
+	public void adjust(LatticeLayoutType layout){
+		this.adjust(LatticeLayoutFactory.createLayout(layout));
+	}
+	
+	/**
+	 * Builds a lattice visualization by using another layout.
+	 * A deadline reached before the levels have been calculated cancels the adjustment, 
+	 * a deadline reached by the layout leaves the lattice partially adjusted.
+	 * 
+	 * @param layout is an object implementing ILatticeLayout that arranges the lattice elements.
+	 * @throws CancellationException if the deadline has been reached before the levels have been calculated.
+	 */
+	public void adjust(ILatticeLayout layout){
+		this.partial = false;
+		this.checkDeadline();
 		
 		if(!this.initialized){
 			LatticeElement minElement = this.getMinimalElement();
@@ -220,6 +466,8 @@ public class Lattice implements ILatticeElementDependency {
 			this.initialized = true;
 		}
 		
+		this.checkDeadline();
+		
 		//sets the distances for each lattice element beginning with the maximal element and moving to the minimal element
 		this.setDistances(this.relation.converse(), this.getMaximalElement(), new ILatticeElementDelegate(){
 			public void setDistance(LatticeElement element, Integer distance){
@@ -236,18 +484,29 @@ public class Lattice implements ILatticeElementDependency {
 		
 		//creates the level presentation from left top element to the right bottom element 
 		this.levels = this.createPositionLevels();
+		this.adjusted = true;
 		
-		//beautifies the the lattice visualization
-		for(int i = 0; i < 20; i++){
-			//sets different positions for elements with the same x coordinate
-			this.setPositions();
-		
-			//removes collisions
-			this.removeCollisions(i);
-			
-			//sets different positions for elements with the same x coordinate	
-			this.setPositions();
-		}
+		//arranges the lattice elements
+		layout.arrange(this);
+	}
+	
+	/**
+	 * Cancels the adjustment if the deadline has been reached, since no positions exist yet.
+	 * 
+	 * @throws CancellationException if the deadline has been reached.
+	 */
+	private void checkDeadline(){
+		if(this.deadline != null && this.deadline.isExpired())
+			throw new CancellationException("The deadline has been reached before the lattice levels were calculated");
+	}
+	
+	/**
+	 * Returns true if the distances and the levels of the lattice elements have been calculated.
+	 * 
+	 * @return True whether the lattice has been adjusted.
+	 */
+	public Boolean isAdjusted(){
+		return this.adjusted;
 	}
 
 	/**
@@ -315,6 +574,8 @@ public class Lattice implements ILatticeElementDependency {
 			}
 			
 			if(current.isEmpty()){
+				this.checkDeadline();
+				
 				def.copyTo(keys, current);
 				keys.clear();
 				path++;
@@ -322,121 +583,6 @@ public class Lattice implements ILatticeElementDependency {
 		}
 	}
 	
-	/**
-	 * Sets the position of each lattice element if two or more elements have the same position(are overlapping).
-	 * <pre>
-	 * {@code
-     * 				o                                o
- 	 *             / \                             /   \
-	 *            /   \                           /     \
-	 *           o     o            ->           o       o
-	 *          / \   / \                      / |       | \
-	 *         /   \ /   \                    /  |       |  \
-	 *        o     oo    o                  o   o       o   o
-	 * }
-	 * </pre>
-	 */
-	private void setPositions(){
-		Float minLength = 1f;
-		LatticeElementLevelCollection levels = this.getLevels();
-		
-		for(LatticeElementLevel level : levels){
-			for(int i = 0; i < level.size(); i++){
-				LatticeElement e1 = level.get(i);
-								
-				for(int j = 0; j < level.size(); j++){
-					LatticeElement e2 = level.get(j);
-					
-					LatticePoint e1Point = e1.getPoint();
-					LatticePoint e2Point = e2.getPoint();
-					Float length = Math.abs(e2Point.getX() - e1Point.getX());
-					
-					if(length < minLength){
-						Float factor = (minLength - length) / 2;
-						
-						e1Point.setX(e1Point.getX() - factor);
-						e2Point.setX(e2Point.getX() + factor);
-					}
-				}
-			}
-		}
-	}
-	
-	/**
-	 * Removes collisions if an element is located very closely to a vertice.
-	 * <pre>
-	 *  {@code
-	 *  		o         o 
- 	 *          |         | \
-	 *          |         |  \
-	 *          o   ->    |   o
-	 *          |         |  /
-	 *          |         | /
-	 *          o         o
-	 *  }
-	 * </pre> 
-	 * @param index is a coefficient indicating how far should be moved a lattice element.
-	 */
-	private void removeCollisions(Integer index){
-		Float dis = 0.3f;		
-		LatticeElementLevelCollection levels = this.getLevels();
-		for(int i = 1; i < levels.size(); i++){
-			LatticeElementLevel level = levels.get(i);
-			
-			for(LatticeElement e : level){
-				for(LatticeElement p : e.getParentElements()){
-					LatticeElementLevel pLevel = levels.find(p);
-					
-					//creates a delegate for looking for all the elements located between two levels
-					LatticeElementLevelCollection range = levels.getRange(level, pLevel, new ILatticeElementLevelCriteria(){
-						public Boolean exists(LatticeElement bottom, LatticeElement top, LatticeElement elem){
-							if( elem.getPoint().getY() > bottom.getPoint().getY() && elem.getPoint().getY() < top.getPoint().getY())
-								return true;
-							return false;
-						}
-					});
-					
-					for(LatticeElementLevel current : range){						
-						if(current != pLevel && current != levels.get(0)){
-							
-							for(LatticeElement c : current){
-								Float disC = Triangle.getDistance(p.getPoint().getX(), p.getPoint().getY(), 
-										e.getPoint().getX(), e.getPoint().getY());
-									
-								Float disA = Triangle.getDistance(p.getPoint().getX(), p.getPoint().getY(),
-										c.getPoint().getX(), c.getPoint().getY());
-								
-								Float disB = Triangle.getDistance(c.getPoint().getX(), c.getPoint().getY(), 
-										e.getPoint().getX(), e.getPoint().getY());
-								
-								Float disH = Triangle.getCHeight(disA, disB, disC);
-								
-								if(disH < dis){
-										Integer sign = c.getPoint().getX() > 0f ? +1 : -1;
-										Integer cParentSize = c.getParentElements().size();
-										Integer eParentSize = e.getParentElements().size();
-										Integer pParentSize = p.getParentElements().size();
-										Integer minParentSize = Math.min(Math.min(cParentSize, eParentSize), pParentSize);
-										
-										if(level.size() == 1 && minParentSize == eParentSize)
-											e.getPoint().setX(e.getPoint().getX() + (4 * dis) * sign + index);
-										else if((current.size() == 1 && minParentSize == cParentSize))
-											c.getPoint().setX(e.getPoint().getX() + (4 * dis)* sign + index);
-										else if(minParentSize == pParentSize && pParentSize != 0)									
-											p.getPoint().setX(p.getPoint().getX() + (4 * dis) * sign + index);
-										else if(minParentSize == pParentSize && pParentSize == 0)
-											e.getPoint().setX(e.getPoint().getX() + (4 * dis) * sign + index);
-										else
-											p.getPoint().setX(p.getPoint().getX() + (4 * dis) * sign + index);
-								}
-							}
-						}
-					}
-				}
-			}
-		}		
-	}
-	
 	/**
 	 * Finds a minimal element.
 	 * 
@@ -515,6 +661,7 @@ public class Lattice implements ILatticeElementDependency {
 			this.storage.add(element);
 			
 			this.initialized = false;
+			this.adjusted = false;
 		}
 	}
 }
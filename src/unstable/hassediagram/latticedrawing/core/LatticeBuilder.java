@@ -44,9 +44,8 @@ class LatticeBuilder {
 			
 			//builds a lattice structure from top to bottom beginning with the maximal element
 			LatticeBuilder.buildTopDownLattice(srcElements, lattice.getElements(), maxElement);
-						
-			//ajusts all lattice element positions
-			lattice.adjust();
+			
+			//the lattice element positions are adjusted on demand by the chosen layout or the standard one
 			
 			return lattice;
 		}
@@ -116,10 +115,14 @@ class LatticeBuilder {
 	 */
 	public static void buildTopDownLattice(LatticeElementStorage srcElements, 
 		LatticeElementCollection dstElements, LatticeElement startElement){
-			
+		//an element reached by another path has already got all its children
+		Boolean visited = startElement.getLattice() != null;
 					
 		dstElements.add(startElement);
 		
+		if(visited)
+			return;
+		
 		for(int i = 0; i < srcElements.size(); i++){			
 			LatticeElement element = srcElements.get(i);
 
@@ -146,6 +149,10 @@ class LatticeBuilder {
 		
 		if(!startElement.getMinimal() && !dstElements.contains(startElement))
 			dstElements.add(startElement);
+		
+		//an element reached by another path has already got all its parents
+		if(!startElement.getParentElements().isEmpty())
+			return;
 					
 		//gets a temporal array list with lattice element dependents 
 		ArrayList<String> dependents = startElement.getDependents();
@@ -0,0 +1,497 @@
+package unstable.hassediagram.latticedrawing.core;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class represents the canonical labelling of a lattice, which is the same for all isomorphic lattices.
+ * The elements are coloured by their distances to the minimal and the maximal element and by their degrees,
+ * and the colours are refined by the colours of the covers until they are stable.
+ * Elements which still share a colour are individualized one after the other and the smallest resulting
+ * certificate is chosen, while branches mapped onto each other by a found automorphism are skipped.
+ * The markings are ignored, so lattices differing only by their names or markings get the same form.
+ * <pre>
+ * {@code
+ * 	certificate = n, covers of the element 0, -1, covers of the element 1, -1, ...
+ * 	hash = fnv-1a 64 of the certificate
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-12-22
+ */
+public class LatticeCanonicalForm {
+	private static final long offsetBasis = 0xcbf29ce484222325L;
+	private static final long prime = 0x100000001b3L;
+
+	private int size;
+	private LatticeDeadline deadline;
+	private int[][] lower;
+	private int[][] upper;
+	private LatticeElement[] elements;
+	private int[] best;
+	private int[] bestOrder;
+	private Vector<int[]> automorphisms;
+	private LatticeElement[] order;
+	private int[][] covers;
+	private long hash;
+
+	/**
+	 * Constructor
+	 *
+	 * @param lattice whose canonical labelling will be calculated.
+	 * @throws CancellationException if the deadline of the lattice has been reached during the search.
+	 */
+	public LatticeCanonicalForm(Lattice lattice){
+		LatticeElementStorage storage = lattice.getStorage();
+		HashMap<LatticeElement, Integer> indices = new HashMap<LatticeElement, Integer>();
+
+		this.size = storage.size();
+		this.deadline = lattice.getDeadline();
+		this.elements = new LatticeElement[this.size];
+
+		for(int i = 0; i < this.size; i++){
+			this.elements[i] = storage.get(i);
+			indices.put(this.elements[i], i);
+		}
+
+		//the dependents of an element are its lower covers
+		Vector<Vector<Integer>> parents = new Vector<Vector<Integer>>();
+		this.lower = new int[this.size][];
+
+		for(int i = 0; i < this.size; i++)
+			parents.add(new Vector<Integer>());
+
+		for(int i = 0; i < this.size; i++){
+			LatticeElementCollection children = this.elements[i].getElements();
+			int j = 0;
+
+			this.lower[i] = new int[children.size()];
+
+			for(LatticeElement child : children){
+				this.lower[i][j++] = indices.get(child);
+				parents.get(indices.get(child)).add(i);
+			}
+		}
+
+		this.upper = new int[this.size][];
+		for(int i = 0; i < this.size; i++){
+			this.upper[i] = new int[parents.get(i).size()];
+
+			for(int j = 0; j < this.upper[i].length; j++)
+				this.upper[i][j] = parents.get(i).get(j);
+		}
+
+		this.automorphisms = new Vector<int[]>();
+		this.search(this.refine(this.createColours()), new Vector<Integer>());
+		this.createResult();
+	}
+
+	/**
+	 * Gets the count of elements.
+	 *
+	 * @return The size of the lattice.
+	 */
+	public Integer getSize(){
+		return this.size;
+	}
+
+	/**
+	 * Gets the hash of the canonical form. Isomorphic lattices have got the same hash.
+	 *
+	 * @return The fnv-1a 64 hash of the certificate.
+	 */
+	public long getHash(){
+		return this.hash;
+	}
+
+	/**
+	 * Gets the elements in the canonical order.
+	 *
+	 * @return The element at each canonical position.
+	 */
+	public LatticeElement[] getElements(){
+		return this.order;
+	}
+
+	/**
+	 * Gets the lower covers of each canonical position, sorted ascending.
+	 * Two lattices are isomorphic if and only if their covers are equal.
+	 *
+	 * @return The canonical positions of the lower covers of each canonical position.
+	 */
+	public int[][] getCovers(){
+		return this.covers;
+	}
+
+	/**
+	 * Returns true whether another lattice is isomorphic to this one.
+	 *
+	 * @param form is the canonical form of the other lattice.
+	 * @return True if the canonical covers are equal.
+	 */
+	public Boolean isIsomorphic(LatticeCanonicalForm form){
+		return this.hash == form.hash && Arrays.deepEquals(this.covers, form.covers);
+	}
+
+	/**
+	 * Gets the initial colours given by the height, the depth and the degrees of each element.
+	 *
+	 * @return The colour of each element.
+	 */
+	private int[] createColours(){
+		int[] height = this.getDistances(this.lower, this.upper);
+		int[] depth = this.getDistances(this.upper, this.lower);
+		int[][] signatures = new int[this.size][];
+
+		for(int i = 0; i < this.size; i++)
+			signatures[i] = new int[]{ height[i], depth[i], this.lower[i].length, this.upper[i].length };
+
+		return this.rank(signatures);
+	}
+
+	/**
+	 * Gets the length of the longest chain from an extremal element to each element.
+	 *
+	 * @param below are the covers towards the extremal element.
+	 * @param above are the covers away from the extremal element.
+	 * @return The distance of each element.
+	 */
+	private int[] getDistances(int[][] below, int[][] above){
+		int[] distances = new int[this.size];
+		int[] pending = new int[this.size];
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+
+		for(int i = 0; i < this.size; i++){
+			pending[i] = below[i].length;
+
+			if(pending[i] == 0)
+				queue.add(i);
+		}
+
+		while(!queue.isEmpty()){
+			int e = queue.removeFirst();
+
+			for(int p : above[e]){
+				distances[p] = Math.max(distances[p], distances[e] + 1);
+
+				if(--pending[p] == 0)
+					queue.add(p);
+			}
+		}
+
+		return distances;
+	}
+
+	/**
+	 * Refines the colours by the colours of the lower and the upper covers until the count of colours is stable.
+	 *
+	 * @param colours is the colour of each element.
+	 * @return The refined colours.
+	 */
+	private int[] refine(int[] colours){
+		int count = this.countColours(colours);
+
+		while(count < this.size){
+			int[][] signatures = new int[this.size][];
+
+			for(int i = 0; i < this.size; i++){
+				int[] signature = new int[2 + this.lower[i].length + this.upper[i].length];
+				int[] below = new int[this.lower[i].length];
+				int[] above = new int[this.upper[i].length];
+
+				for(int j = 0; j < below.length; j++)
+					below[j] = colours[this.lower[i][j]];
+
+				for(int j = 0; j < above.length; j++)
+					above[j] = colours[this.upper[i][j]];
+
+				Arrays.sort(below);
+				Arrays.sort(above);
+
+				//the previous colour comes first, so a refined colour keeps the order of the previous colours
+				signature[0] = colours[i];
+				signature[1] = below.length;
+				System.arraycopy(below, 0, signature, 2, below.length);
+				System.arraycopy(above, 0, signature, 2 + below.length, above.length);
+				signatures[i] = signature;
+			}
+
+			int[] refined = this.rank(signatures);
+			int refinedCount = this.countColours(refined);
+
+			if(refinedCount == count)
+				break;
+
+			colours = refined;
+			count = refinedCount;
+		}
+
+		return colours;
+	}
+
+	/**
+	 * Numbers the distinct signatures by their lexicographic order.
+	 *
+	 * @param signatures is the signature of each element.
+	 * @return The rank of the signature of each element.
+	 */
+	private int[] rank(final int[][] signatures){
+		Integer[] indices = new Integer[this.size];
+		int[] ranks = new int[this.size];
+
+		for(int i = 0; i < this.size; i++)
+			indices[i] = i;
+
+		Arrays.sort(indices, new Comparator<Integer>(){
+			public int compare(Integer i, Integer j){
+				return LatticeCanonicalForm.compare(signatures[i], signatures[j]);
+			}
+		});
+
+		int rank = 0;
+		for(int i = 0; i < this.size; i++){
+			if(i > 0 && compare(signatures[indices[i - 1]], signatures[indices[i]]) != 0)
+				rank++;
+
+			ranks[indices[i]] = rank;
+		}
+
+		return ranks;
+	}
+
+	/**
+	 * Counts the distinct colours.
+	 *
+	 * @param colours is the colour of each element, numbered from 0.
+	 * @return The count of colours.
+	 */
+	private int countColours(int[] colours){
+		int max = -1;
+
+		for(int colour : colours)
+			max = Math.max(max, colour);
+
+		return max + 1;
+	}
+
+	/**
+	 * Searches the smallest certificate by individualizing the elements of the first colour shared by several elements.
+	 * The deadline of the lattice is checked before each branch, since the search may backtrack for a long time.
+	 *
+	 * @param colours are the refined colours.
+	 * @param prefix contains the individualized elements.
+	 */
+	private void search(int[] colours, Vector<Integer> prefix){
+		if(this.countColours(colours) == this.size){
+			this.visitLeaf(colours);
+			return;
+		}
+
+		int[] sizes = new int[this.size];
+		for(int colour : colours)
+			sizes[colour]++;
+
+		int target = 0;
+		while(sizes[target] < 2)
+			target++;
+
+		Vector<Integer> explored = new Vector<Integer>();
+
+		for(int v = 0; v < this.size; v++){
+			if(colours[v] != target || this.isEquivalent(v, explored, prefix))
+				continue;
+
+			if(this.deadline != null && this.deadline.isExpired())
+				throw new CancellationException("The deadline has been reached before the canonical form was calculated");
+
+			//the element gets a colour of its own, which comes before the other elements of its colour
+			int[][] individualized = new int[this.size][];
+			for(int i = 0; i < this.size; i++)
+				individualized[i] = new int[]{ colours[i], i == v ? 0 : 1 };
+
+			prefix.add(v);
+			this.search(this.refine(this.rank(individualized)), prefix);
+			prefix.remove(prefix.size() - 1);
+
+			explored.add(v);
+		}
+	}
+
+	/**
+	 * Returns true if an automorphism fixing the individualized elements maps an explored element onto an element.
+	 * The branch of such an element gives the same certificates as the explored one.
+	 *
+	 * @param v is the element which will be individualized.
+	 * @param explored are the elements of the same colour individualized before.
+	 * @param prefix contains the individualized elements.
+	 * @return True whether the branch can be skipped.
+	 */
+	private Boolean isEquivalent(int v, Vector<Integer> explored, Vector<Integer> prefix){
+		if(explored.isEmpty() || this.automorphisms.isEmpty())
+			return false;
+
+		int[] parents = new int[this.size];
+		for(int i = 0; i < this.size; i++)
+			parents[i] = i;
+
+		for(int[] automorphism : this.automorphisms){
+			Boolean fixing = true;
+
+			for(int p : prefix)
+				fixing &= automorphism[p] == p;
+
+			if(!fixing)
+				continue;
+
+			for(int i = 0; i < this.size; i++)
+				this.union(parents, i, automorphism[i]);
+		}
+
+		int orbit = this.find(parents, v);
+
+		for(int e : explored){
+			if(this.find(parents, e) == orbit)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Finds the representative of an orbit.
+	 *
+	 * @param parents is the union-find forest of the orbits.
+	 * @param i is an element.
+	 * @return The representative of the orbit of the element.
+	 */
+	private int find(int[] parents, int i){
+		while(parents[i] != i){
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+
+		return i;
+	}
+
+	/**
+	 * Joins the orbits of two elements.
+	 *
+	 * @param parents is the union-find forest of the orbits.
+	 * @param i is an element.
+	 * @param j is another element.
+	 */
+	private void union(int[] parents, int i, int j){
+		parents[this.find(parents, i)] = this.find(parents, j);
+	}
+
+	/**
+	 * Compares the certificate of a discrete colouring with the smallest certificate found so far.
+	 * An equal certificate reveals an automorphism.
+	 *
+	 * @param colours are distinct colours, which are the positions of the elements.
+	 */
+	private void visitLeaf(int[] colours){
+		int[] certificate = this.createCertificate(colours);
+
+		if(this.best == null || compare(certificate, this.best) < 0){
+			this.best = certificate;
+			this.bestOrder = new int[this.size];
+
+			for(int i = 0; i < this.size; i++)
+				this.bestOrder[colours[i]] = i;
+		}
+		else if(compare(certificate, this.best) == 0){
+			int[] automorphism = new int[this.size];
+
+			for(int i = 0; i < this.size; i++)
+				automorphism[i] = this.bestOrder[colours[i]];
+
+			this.automorphisms.add(automorphism);
+		}
+	}
+
+	/**
+	 * Creates the certificate of a discrete colouring.
+	 *
+	 * @param colours are distinct colours, which are the positions of the elements.
+	 * @return The count of elements followed by the sorted positions of the lower covers of each position.
+	 */
+	private int[] createCertificate(int[] colours){
+		int edges = 0;
+		for(int i = 0; i < this.size; i++)
+			edges += this.lower[i].length;
+
+		int[] order = new int[this.size];
+		for(int i = 0; i < this.size; i++)
+			order[colours[i]] = i;
+
+		int[] certificate = new int[1 + edges + this.size];
+		int position = 0;
+
+		certificate[position++] = this.size;
+
+		for(int i = 0; i < this.size; i++){
+			int[] covers = new int[this.lower[order[i]].length];
+
+			for(int j = 0; j < covers.length; j++)
+				covers[j] = colours[this.lower[order[i]][j]];
+
+			Arrays.sort(covers);
+			System.arraycopy(covers, 0, certificate, position, covers.length);
+			position += covers.length;
+			certificate[position++] = -1;
+		}
+
+		return certificate;
+	}
+
+	/**
+	 * Creates the canonical order, the canonical covers and the hash from the smallest certificate.
+	 */
+	private void createResult(){
+		this.order = new LatticeElement[this.size];
+		this.covers = new int[this.size][];
+		this.hash = offsetBasis;
+
+		if(this.best == null)
+			this.best = new int[]{ 0 };
+
+		for(int i = 0; i < this.size; i++)
+			this.order[i] = this.elements[this.bestOrder[i]];
+
+		int position = 1;
+		for(int i = 0; i < this.size; i++){
+			int end = position;
+
+			while(this.best[end] >= 0)
+				end++;
+
+			this.covers[i] = Arrays.copyOfRange(this.best, position, end);
+			position = end + 1;
+		}
+
+		for(int value : this.best){
+			for(int shift = 0; shift < 32; shift += 8){
+				this.hash ^= (value >>> shift) & 0xFF;
+				this.hash *= prime;
+			}
+		}
+	}
+
+	/**
+	 * Compares two arrays lexicographically, a shorter prefix is smaller.
+	 *
+	 * @param a is the first array.
+	 * @param b is the second array.
+	 * @return A negative number, zero or a positive number as the first array is smaller, equal or greater.
+	 */
+	private static int compare(int[] a, int[] b){
+		for(int i = 0; i < Math.min(a.length, b.length); i++){
+			if(a[i] != b[i])
+				return a[i] < b[i] ? -1 : 1;
+		}
+
+		return a.length - b.length;
+	}
+}
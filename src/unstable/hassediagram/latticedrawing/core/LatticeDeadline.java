@@ -0,0 +1,62 @@
+package unstable.hassediagram.latticedrawing.core;
+
+import java.util.concurrent.*;
+
+/**
+ * This class represents a deadline for adjusting a lattice, which can be cancelled as well.
+ * The adjustment checks it at safe points and a layout stops as soon as the deadline has been reached,
+ * so the lattice keeps the best positions calculated so far.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-11-03
+ */
+public class LatticeDeadline {
+	private long expiration;
+	private volatile Boolean cancelled = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param timeout is the time in milliseconds after which the deadline is reached.
+	 */
+	public LatticeDeadline(long timeout){
+		this.expiration = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+	}
+
+	/**
+	 * Reaches the deadline immediately.
+	 */
+	public void cancel(){
+		this.cancelled = true;
+	}
+
+	/**
+	 * Returns true if the deadline has been cancelled.
+	 *
+	 * @return True whether the deadline has been cancelled.
+	 */
+	public Boolean isCancelled(){
+		return this.cancelled;
+	}
+
+	/**
+	 * Returns true if the deadline has been reached or cancelled.
+	 *
+	 * @return True whether the adjustment should stop.
+	 */
+	public Boolean isExpired(){
+		return this.cancelled || System.nanoTime() - this.expiration >= 0;
+	}
+
+	/**
+	 * Gets the time remaining until the deadline.
+	 *
+	 * @return The remaining time in milliseconds, which is zero if the deadline has been reached.
+	 */
+	public long getRemaining(){
+		if(this.cancelled)
+			return 0;
+
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(this.expiration - System.nanoTime()));
+	}
+}
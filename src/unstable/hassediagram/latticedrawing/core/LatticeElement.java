@@ -4,6 +4,7 @@ import java.util.*;
 
 import unstable.hassediagram.latticedrawing.descriptors.ILatticePointDescriptor;
 import unstable.hassediagram.latticedrawing.descriptors.LatticePointDescriptorFactory;
+import unstable.hassediagram.latticedrawing.layouts.LatticeLayoutType;
 
 /**
  * This class represents an element of a lattice.
@@ -204,9 +205,15 @@ public class LatticeElement implements ILatticeElementDependency {
 	/**
 	 * Gets the point of the lattice element in the plain.
 	 * 
+	 * The lattice is adjusted by the standard collision layout if no layout has been applied yet.
+	 * 
 	 * @return The point object.
 	 */
 	public LatticePoint getPoint(){
+		if(this.point == null && !this.lattice.isAdjusted())
+			//the level of the element is only known after the lattice has been adjusted
+			this.lattice.adjust(LatticeLayoutType.Collision);
+		
 		if(this.point == null){
 			ILatticePointDescriptor  descriptor = LatticePointDescriptorFactory.createDescriptor(this);
 		
@@ -0,0 +1,305 @@
+package unstable.hassediagram.latticedrawing.core;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+
+/**
+ * This class represents an index of a file containing many concatenated interpretations, like the output of Mace4.
+ * The index maps the number of each interpretation to the position and the length of its block,
+ * so a single interpretation is read without scanning the blocks before it.
+ * The index is built in one sequential pass and saved next to the file with the extension .index.
+ * It is valid only as long as the size and the modification date of the file are the same.
+ * <pre>
+ * {@code
+ * 	offset                 type        content
+ * 	0                      char[4]     "LATI"
+ * 	4                      uint16      version
+ * 	6                      uint16      reserved
+ * 	8                      int64       size of the interpretation file
+ * 	16                     int64       modification date of the interpretation file
+ * 	24                     uint32      count of interpretations m
+ * 	28 + 16k               int32       number of the interpretation k
+ * 	32 + 16k               int64       position of the block
+ * 	40 + 16k               int32       length of the block
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-11-24
+ */
+public class LatticeOffsetIndex {
+	public static final short version = 1;
+	public static final String extension = ".index";
+	private static final byte[] magic = { 'L', 'A', 'T', 'I' };
+	private static final int headerSize = 28;
+	private static final int entrySize = 16;
+	private static final byte[] token = "interpretation(".getBytes();
+	private static final Pattern numberPattern = Pattern.compile("number\\s*=\\s*([0-9]+)");
+	private static final ConcurrentHashMap<String, LatticeOffsetIndex> indexes = new ConcurrentHashMap<String, LatticeOffsetIndex>();
+
+	private long size;
+	private long lastModified;
+	private HashMap<Integer, long[]> blocks;
+
+	/**
+	 * Constructor
+	 *
+	 * @param size of the interpretation file.
+	 * @param lastModified is the modification date of the interpretation file.
+	 */
+	private LatticeOffsetIndex(long size, long lastModified){
+		this.size = size;
+		this.lastModified = lastModified;
+		this.blocks = new HashMap<Integer, long[]>();
+	}
+
+	/**
+	 * Gets the index of an interpretation file. The index is kept in memory and rebuilt when the file has changed.
+	 *
+	 * @param file is the file containing the interpretations.
+	 * @return The valid index of the file.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static LatticeOffsetIndex open(File file) throws IOException {
+		String key = file.getAbsolutePath();
+		LatticeOffsetIndex index = indexes.get(key);
+
+		if(index != null && index.isValid(file))
+			return index;
+
+		index = read(file);
+
+		if(index == null){
+			index = build(file);
+			index.write(new File(file.getPath() + extension));
+		}
+
+		indexes.put(key, index);
+
+		return index;
+	}
+
+	/**
+	 * Gets the count of indexed interpretations.
+	 *
+	 * @return The count of interpretations.
+	 */
+	public Integer getCount(){
+		return this.blocks.size();
+	}
+
+	/**
+	 * Returns true if the file contains an interpretation.
+	 *
+	 * @param number of the interpretation.
+	 * @return True whether the interpretation exists.
+	 */
+	public Boolean contains(Integer number){
+		return this.blocks.containsKey(number);
+	}
+
+	/**
+	 * Reads the block of an interpretation through a positional read.
+	 *
+	 * @param file is the file containing the interpretations.
+	 * @param number of the interpretation.
+	 * @return The text of the interpretation or null if the file does not contain it.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public String read(File file, Integer number) throws IOException {
+		long[] block = this.blocks.get(number);
+
+		if(block == null)
+			return null;
+
+		FileChannel channel = new FileInputStream(file).getChannel();
+
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate((int)block[1]);
+			long position = block[0];
+
+			while(buffer.hasRemaining()){
+				int count = channel.read(buffer, position);
+
+				if(count < 0)
+					throw new EOFException(file + " is shorter than its index");
+
+				position += count;
+			}
+
+			return new String(buffer.array());
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns true whether the index describes the current content of the file.
+	 *
+	 * @param file is the file containing the interpretations.
+	 * @return True if the size and the modification date are unchanged.
+	 */
+	private Boolean isValid(File file){
+		return file.length() == this.size && file.lastModified() == this.lastModified;
+	}
+
+	/**
+	 * Builds the index in one sequential pass. A block starts with "interpretation(" at the beginning of a line
+	 * and ends before the next block. A block without a number gets its position in the file, starting from 1.
+	 *
+	 * @param file is the file containing the interpretations.
+	 * @return A new index.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private static LatticeOffsetIndex build(File file) throws IOException {
+		LatticeOffsetIndex index = new LatticeOffsetIndex(file.length(), file.lastModified());
+		InputStream stream = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+		StringBuilder header = new StringBuilder();
+		long position = 0;
+		long start = -1;
+		int matched = 0;
+		int previous = '\n';
+		int c;
+
+		try {
+			while((c = stream.read()) >= 0){
+				//matches the token only at the beginning of a line
+				if(matched > 0 || previous == '\n'){
+					matched = c == token[matched] ? matched + 1 : 0;
+
+					if(matched == token.length){
+						long begin = position + 1 - token.length;
+
+						if(start >= 0)
+							index.add(header.toString(), start, begin);
+
+						start = begin;
+						matched = 0;
+						header.setLength(0);
+					}
+				}
+
+				//keeps the first line of the block, which contains its number
+				if(start >= 0 && header.length() < 256 && (header.length() == 0 || header.charAt(header.length() - 1) != '\n'))
+					header.append((char)c);
+
+				previous = c;
+				position++;
+			}
+		} finally {
+			stream.close();
+		}
+
+		if(start >= 0)
+			index.add(header.toString(), start, position);
+
+		return index;
+	}
+
+	/**
+	 * Adds the block of an interpretation.
+	 *
+	 * @param header is the first line of the block.
+	 * @param start is the position of the block.
+	 * @param end is the position after the block.
+	 */
+	private void add(String header, long start, long end){
+		Matcher matcher = numberPattern.matcher(header);
+		Integer number = matcher.find() ? Integer.parseInt(matcher.group(1)) : this.blocks.size() + 1;
+
+		this.blocks.put(number, new long[] { start, end - start });
+	}
+
+	/**
+	 * Reads the saved index of a file.
+	 *
+	 * @param file is the file containing the interpretations.
+	 * @return The saved index or null if it does not exist or is out of date.
+	 * @throws IOException if the index cannot be read.
+	 */
+	private static LatticeOffsetIndex read(File file) throws IOException {
+		File indexFile = new File(file.getPath() + extension);
+
+		if(!indexFile.isFile() || indexFile.length() < headerSize)
+			return null;
+
+		byte[] bytes = new byte[(int)indexFile.length()];
+		DataInputStream stream = new DataInputStream(new FileInputStream(indexFile));
+
+		try {
+			stream.readFully(bytes);
+		} finally {
+			stream.close();
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		byte[] signature = new byte[magic.length];
+		buffer.get(signature);
+
+		if(!Arrays.equals(signature, magic) || buffer.getShort() != version)
+			return null;
+
+		buffer.getShort();
+		LatticeOffsetIndex index = new LatticeOffsetIndex(buffer.getLong(), buffer.getLong());
+		int count = buffer.getInt();
+
+		if(!index.isValid(file) || buffer.remaining() != count * entrySize)
+			return null;
+
+		for(int i = 0; i < count; i++){
+			Integer number = buffer.getInt();
+			long position = buffer.getLong();
+
+			index.blocks.put(number, new long[] { position, buffer.getInt() });
+		}
+
+		return index;
+	}
+
+	/**
+	 * Saves the index. The index is only kept in memory if the directory is not writable.
+	 *
+	 * @param indexFile is the file which will contain the index.
+	 */
+	private void write(File indexFile){
+		ByteBuffer buffer = ByteBuffer.allocate(headerSize + this.blocks.size() * entrySize).order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.put(magic);
+		buffer.putShort(version);
+		buffer.putShort((short)0);
+		buffer.putLong(this.size);
+		buffer.putLong(this.lastModified);
+		buffer.putInt(this.blocks.size());
+
+		for(Map.Entry<Integer, long[]> entry : this.blocks.entrySet()){
+			buffer.putInt(entry.getKey());
+			buffer.putLong(entry.getValue()[0]);
+			buffer.putInt((int)entry.getValue()[1]);
+		}
+
+		try {
+			//renames a complete file, so a concurrent reader never sees a partial index
+			File temp = File.createTempFile("index", ".tmp", indexFile.getAbsoluteFile().getParentFile());
+			OutputStream stream = new FileOutputStream(temp);
+
+			try {
+				stream.write(buffer.array());
+			} finally {
+				stream.close();
+			}
+
+			if(!temp.renameTo(indexFile)){
+				indexFile.delete();
+
+				if(!temp.renameTo(indexFile))
+					temp.delete();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package unstable.hassediagram.latticedrawing.core;
+
+import java.util.*;
+
+/**
+ * This class represents the join and the meet of a lattice, the elements are given by their positions in the storage.
+ * A small lattice keeps both operations as tables of n * n positions, so a query is a single array access.
+ * A large lattice uses the reachability index of the lattice instead:
+ * the join is the first common element of both up-sets and the meet is the last common element of both down-sets,
+ * the results of recent queries are kept in a small cache.
+ *
+ * @author Eugen Petrosean
+ * @since 2011-01-12
+ */
+public class LatticeOperations {
+	public static final int maxTableSize = 256;
+	private static final int cacheSize = 4096;
+
+	private int size;
+	private LatticeElementStorage storage;
+	private LatticeReachability reachability;
+	private int[] joins;
+	private int[] meets;
+	private LinkedHashMap<Long, Integer> cache;
+
+	/**
+	 * Constructor
+	 *
+	 * @param lattice whose operations will be calculated.
+	 */
+	public LatticeOperations(Lattice lattice){
+		this.storage = lattice.getStorage();
+		this.size = this.storage.size();
+		this.reachability = lattice.getReachability();
+
+		if(this.size <= maxTableSize){
+			this.createTables();
+		} else {
+			this.cache = new LinkedHashMap<Long, Integer>(16, 0.75f, true){
+				private static final long serialVersionUID = 1L;
+
+				protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest){
+					return this.size() > cacheSize;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Gets the position of an element in the storage.
+	 *
+	 * @param element of the lattice.
+	 * @return The position of the element.
+	 */
+	public int indexOf(LatticeElement element){
+		return this.reachability.getIndex(this.reachability.getPosition(element));
+	}
+
+	/**
+	 * Gets the least upper bound of two elements.
+	 *
+	 * @param a is the first element.
+	 * @param b is the second element.
+	 * @return The join of both elements.
+	 */
+	public LatticeElement join(LatticeElement a, LatticeElement b){
+		return this.storage.get(this.join(this.indexOf(a), this.indexOf(b)));
+	}
+
+	/**
+	 * Gets the greatest lower bound of two elements.
+	 *
+	 * @param a is the first element.
+	 * @param b is the second element.
+	 * @return The meet of both elements.
+	 */
+	public LatticeElement meet(LatticeElement a, LatticeElement b){
+		return this.storage.get(this.meet(this.indexOf(a), this.indexOf(b)));
+	}
+
+	/**
+	 * Gets the least upper bound of two elements.
+	 *
+	 * @param a is the position of the first element in the storage.
+	 * @param b is the position of the second element in the storage.
+	 * @return The position of the join.
+	 */
+	public int join(int a, int b){
+		if(this.joins != null)
+			return this.joins[a * this.size + b];
+
+		return this.lookup(a, b, true);
+	}
+
+	/**
+	 * Gets the greatest lower bound of two elements.
+	 *
+	 * @param a is the position of the first element in the storage.
+	 * @param b is the position of the second element in the storage.
+	 * @return The position of the meet.
+	 */
+	public int meet(int a, int b){
+		if(this.meets != null)
+			return this.meets[a * this.size + b];
+
+		return this.lookup(a, b, false);
+	}
+
+	/**
+	 * Gets the joins of many pairs of elements.
+	 *
+	 * @param a are the positions of the first elements in the storage.
+	 * @param b are the positions of the second elements in the storage.
+	 * @param result receives the position of the join of each pair.
+	 */
+	public void join(int[] a, int[] b, int[] result){
+		if(this.joins != null){
+			for(int i = 0; i < result.length; i++)
+				result[i] = this.joins[a[i] * this.size + b[i]];
+		} else {
+			//a bulk query is rarely repeated, so it bypasses the cache
+			for(int i = 0; i < result.length; i++)
+				result[i] = this.joinOf(a[i], b[i]);
+		}
+	}
+
+	/**
+	 * Gets the meets of many pairs of elements.
+	 *
+	 * @param a are the positions of the first elements in the storage.
+	 * @param b are the positions of the second elements in the storage.
+	 * @param result receives the position of the meet of each pair.
+	 */
+	public void meet(int[] a, int[] b, int[] result){
+		if(this.meets != null){
+			for(int i = 0; i < result.length; i++)
+				result[i] = this.meets[a[i] * this.size + b[i]];
+		} else {
+			for(int i = 0; i < result.length; i++)
+				result[i] = this.meetOf(a[i], b[i]);
+		}
+	}
+
+	/**
+	 * Gets the join or the meet of a large lattice from the cache or from the bitsets.
+	 *
+	 * @param a is the position of the first element in the storage.
+	 * @param b is the position of the second element in the storage.
+	 * @param join is true for the join and false for the meet.
+	 * @return The position of the result.
+	 */
+	private int lookup(int a, int b, Boolean join){
+		//both operations are commutative, so a pair is cached once
+		long key = ((long)Math.min(a, b) * this.size + Math.max(a, b)) << 1 | (join ? 1 : 0);
+
+		synchronized(this.cache){
+			Integer result = this.cache.get(key);
+
+			if(result != null)
+				return result;
+		}
+
+		int result = join ? this.joinOf(a, b) : this.meetOf(a, b);
+
+		synchronized(this.cache){
+			this.cache.put(key, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Gets the join from the reachability index.
+	 *
+	 * @param a is the position of the first element in the storage.
+	 * @param b is the position of the second element in the storage.
+	 * @return The position of the join in the storage.
+	 */
+	private int joinOf(int a, int b){
+		LatticeReachability r = this.reachability;
+
+		return r.getIndex(r.join(r.getPosition(a), r.getPosition(b)));
+	}
+
+	/**
+	 * Gets the meet from the reachability index.
+	 *
+	 * @param a is the position of the first element in the storage.
+	 * @param b is the position of the second element in the storage.
+	 * @return The position of the meet in the storage.
+	 */
+	private int meetOf(int a, int b){
+		LatticeReachability r = this.reachability;
+
+		return r.getIndex(r.meet(r.getPosition(a), r.getPosition(b)));
+	}
+
+	/**
+	 * Fills the join and the meet tables from the reachability index.
+	 */
+	private void createTables(){
+		this.joins = new int[this.size * this.size];
+		this.meets = new int[this.size * this.size];
+
+		for(int a = 0; a < this.size; a++){
+			for(int b = a; b < this.size; b++){
+				int join = this.joinOf(a, b);
+				int meet = this.meetOf(a, b);
+
+				this.joins[a * this.size + b] = this.joins[b * this.size + a] = join;
+				this.meets[a * this.size + b] = this.meets[b * this.size + a] = meet;
+			}
+		}
+	}
+}
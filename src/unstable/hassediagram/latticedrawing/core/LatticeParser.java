@@ -10,8 +10,10 @@ import unstable.hassediagram.latticedrawing.utils.*;
  * @since 2010-06-01
  *
  */
-class LatticeParser {
+public class LatticeParser {
 	private String structure;
+	private RelationMatrix matrix;
+	private RelationMatrix markingMatrix;
 	private String interpretationRegex = "interpretation\\(\\s*([0-9]|[1-9][0-9]),\\s*";
 	private String markingRegex = "relation\\(test\\(_\\),\\s*\\[([01,\\s]*)\\]\\)";
 	private String relationRegex = "relation\\(\\<=\\(_,_\\),\\s*\\[([01,\\s]*)\\]\\)"; 
@@ -25,6 +27,43 @@ class LatticeParser {
 		this.structure = structure;
 	}
 	
+	/**
+	 * Constructor
+	 * @param matrix contains the partitial order of the lattice elements.
+	 * @param markingMatrix is a single row describing which element should be marked.
+	 */
+	public LatticeParser(RelationMatrix matrix, RelationMatrix markingMatrix){
+		this.matrix = matrix;
+		this.markingMatrix = markingMatrix;
+	}
+	
+	/**
+	 * Gets the matrix containing the partitial order.
+	 * 
+	 * @return The relation matrix of the lattice elements.
+	 */
+	public RelationMatrix getMatrix(){
+		if(this.matrix == null){
+			Integer size = this.getLatticeSize();
+			
+			this.matrix = new RelationMatrix(this.getLatticeStructure(), size, size);
+		}
+		
+		return this.matrix;
+	}
+	
+	/**
+	 * Gets the matrix describing which element should be marked.
+	 * 
+	 * @return A relation matrix with a single row.
+	 */
+	public RelationMatrix getMarkingMatrix(){
+		if(this.markingMatrix == null)
+			this.markingMatrix = new RelationMatrix(this.getLatticeMarkingStructure(), 1, this.getMatrix().getRowDimension());
+		
+		return this.markingMatrix;
+	}
+	
 	/**
 	 * Generates an internal xml format. 
 	 * <pre>
@@ -48,13 +87,9 @@ class LatticeParser {
 	 * @return The internal xml format. 
 	 */
 	public String parse(){
-		Integer size = this.getLatticeSize();
-		
-		RelationMatrix matrix = new RelationMatrix(
-				this.getLatticeStructure(), size, size);
-		
-		RelationMatrix markingMatrix = new RelationMatrix(
-				this.getLatticeMarkingStructure(), 1, size);
+		RelationMatrix matrix = this.getMatrix();
+		RelationMatrix markingMatrix = this.getMarkingMatrix();
+		Integer size = matrix.getRowDimension();
 				
 		Relation relation = this.createHasseRelation(matrix);
 				
@@ -0,0 +1,374 @@
+package unstable.hassediagram.latticedrawing.core;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * This class represents the transitive closure of the hasse diagram, so every order query takes constant time.
+ * The elements are numbered along a linear extension, called positions, an element follows all of its lower covers.
+ * The down-set of an element is the union of the down-sets of its lower covers, so the whole closure is built
+ * with a single bitwise or of n / 64 words per cover. The up-sets are built the same way from the upper covers.
+ * <pre>
+ * {@code
+ * 	leq(a, b)            bit a of the down-set of b
+ * 	interval(a, b)       up-set of a and down-set of b
+ * 	join(a, b)           first position of both up-sets
+ * 	meet(a, b)           last position of both down-sets
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2011-01-19
+ */
+public class LatticeReachability {
+	private int size;
+	private int words;
+	private int[] order;
+	private int[] position;
+	private int[][] lower;
+	private int[][] upper;
+	private long[] downSets;
+	private long[] upSets;
+	private long[] upperCovers;
+	private HashMap<LatticeElement, Integer> indices;
+
+	/**
+	 * Constructor
+	 *
+	 * @param lattice whose order will be indexed.
+	 */
+	public LatticeReachability(Lattice lattice){
+		this(getLowerCovers(lattice.getStorage()));
+
+		LatticeElementStorage storage = lattice.getStorage();
+		this.indices = new HashMap<LatticeElement, Integer>();
+
+		for(int i = 0; i < this.size; i++)
+			this.indices.put(storage.get(i), this.position[i]);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param lower are the indices of the lower covers of each element.
+	 * @throws IllegalArgumentException if the covers contain a cycle.
+	 */
+	public LatticeReachability(int[][] lower){
+		this.size = lower.length;
+		this.words = (this.size + 63) >>> 6;
+		this.order = new int[this.size];
+		this.position = new int[this.size];
+
+		int[] pending = new int[this.size];
+		int[][] dependents = invert(lower);
+		int count = 0;
+
+		for(int i = 0; i < this.size; i++){
+			pending[i] = lower[i].length;
+
+			if(pending[i] == 0)
+				this.order[count++] = i;
+		}
+
+		for(int k = 0; k < count; k++){
+			for(int parent : dependents[this.order[k]]){
+				if(--pending[parent] == 0)
+					this.order[count++] = parent;
+			}
+		}
+
+		if(count < this.size)
+			throw new IllegalArgumentException("The covers contain a cycle");
+
+		for(int k = 0; k < this.size; k++)
+			this.position[this.order[k]] = k;
+
+		this.lower = new int[this.size][];
+
+		for(int k = 0; k < this.size; k++){
+			int[] children = lower[this.order[k]];
+
+			this.lower[k] = new int[children.length];
+			for(int j = 0; j < children.length; j++)
+				this.lower[k][j] = this.position[children[j]];
+		}
+
+		this.upper = invert(this.lower);
+		this.createSets();
+	}
+
+	/**
+	 * Gets the count of elements.
+	 *
+	 * @return The size of the lattice.
+	 */
+	public int getSize(){
+		return this.size;
+	}
+
+	/**
+	 * Gets the count of words of each bitset.
+	 *
+	 * @return The count of longs of a down-set or an up-set.
+	 */
+	public int getWords(){
+		return this.words;
+	}
+
+	/**
+	 * Gets the position of an element in the storage.
+	 *
+	 * @param position of the element in the linear extension.
+	 * @return The index of the element in the storage.
+	 */
+	public int getIndex(int position){
+		return this.order[position];
+	}
+
+	/**
+	 * Gets the position of an element in the linear extension.
+	 *
+	 * @param index of the element in the storage.
+	 * @return The position of the element.
+	 */
+	public int getPosition(int index){
+		return this.position[index];
+	}
+
+	/**
+	 * Gets the position of an element in the linear extension.
+	 *
+	 * @param element of the lattice.
+	 * @return The position of the element.
+	 */
+	public int getPosition(LatticeElement element){
+		return this.indices.get(element);
+	}
+
+	/**
+	 * Gets the lower covers of an element, which all precede it in the linear extension.
+	 *
+	 * @param a is the position of the element.
+	 * @return The positions of the lower covers, the array must not be changed.
+	 */
+	public int[] getLowerCovers(int a){
+		return this.lower[a];
+	}
+
+	/**
+	 * Gets the upper covers of an element, which all follow it in the linear extension.
+	 *
+	 * @param a is the position of the element.
+	 * @return The positions of the upper covers, the array must not be changed.
+	 */
+	public int[] getUpperCovers(int a){
+		return this.upper[a];
+	}
+
+	/**
+	 * Returns true if an element is below or equal to another one.
+	 *
+	 * @param a is the position of the first element.
+	 * @param b is the position of the second element.
+	 * @return True whether a is below or equal to b.
+	 */
+	public Boolean leq(int a, int b){
+		return (this.downSets[b * this.words + (a >>> 6)] & 1L << a) != 0;
+	}
+
+	/**
+	 * Returns true if an element is below or equal to another one.
+	 *
+	 * @param a is the first element.
+	 * @param b is the second element.
+	 * @return True whether a is below or equal to b.
+	 */
+	public Boolean leq(LatticeElement a, LatticeElement b){
+		return this.leq(this.getPosition(a), this.getPosition(b));
+	}
+
+	/**
+	 * Returns true if an element is covered by another one.
+	 *
+	 * @param a is the position of the lower element.
+	 * @param b is the position of the upper element.
+	 * @return True whether b covers a.
+	 */
+	public Boolean covers(int a, int b){
+		return (this.upperCovers[a * this.words + (b >>> 6)] & 1L << b) != 0;
+	}
+
+	/**
+	 * Gets the elements below or equal to an element.
+	 *
+	 * @param a is the position of the element.
+	 * @return A read only view of the bitset of positions.
+	 */
+	public LongBuffer downSet(int a){
+		return LongBuffer.wrap(this.downSets, a * this.words, this.words).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Gets the elements above or equal to an element.
+	 *
+	 * @param a is the position of the element.
+	 * @return A read only view of the bitset of positions.
+	 */
+	public LongBuffer upSet(int a){
+		return LongBuffer.wrap(this.upSets, a * this.words, this.words).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Gets the elements located between two elements including both of them.
+	 *
+	 * @param a is the position of the lower element.
+	 * @param b is the position of the upper element.
+	 * @return A new bitset of positions, which is empty unless a is below or equal to b.
+	 */
+	public LongBuffer interval(int a, int b){
+		long[] interval = new long[this.words];
+		int offsetA = a * this.words;
+		int offsetB = b * this.words;
+
+		for(int w = 0; w < this.words; w++)
+			interval[w] = this.upSets[offsetA + w] & this.downSets[offsetB + w];
+
+		return LongBuffer.wrap(interval);
+	}
+
+	/**
+	 * Gets the join of two elements, the first position of the intersection of their up-sets.
+	 *
+	 * @param a is the position of the first element.
+	 * @param b is the position of the second element.
+	 * @return The position of the join.
+	 * @throws IllegalStateException if the elements have got no upper bound.
+	 */
+	public int join(int a, int b){
+		int offsetA = a * this.words;
+		int offsetB = b * this.words;
+
+		for(int w = 0; w < this.words; w++){
+			long common = this.upSets[offsetA + w] & this.upSets[offsetB + w];
+
+			if(common != 0)
+				return (w << 6) + Long.numberOfTrailingZeros(common);
+		}
+
+		throw new IllegalStateException("The elements have got no upper bound");
+	}
+
+	/**
+	 * Gets the meet of two elements, the last position of the intersection of their down-sets.
+	 *
+	 * @param a is the position of the first element.
+	 * @param b is the position of the second element.
+	 * @return The position of the meet.
+	 * @throws IllegalStateException if the elements have got no lower bound.
+	 */
+	public int meet(int a, int b){
+		int offsetA = a * this.words;
+		int offsetB = b * this.words;
+
+		for(int w = this.words - 1; w >= 0; w--){
+			long common = this.downSets[offsetA + w] & this.downSets[offsetB + w];
+
+			if(common != 0)
+				return (w << 6) + 63 - Long.numberOfLeadingZeros(common);
+		}
+
+		throw new IllegalStateException("The elements have got no lower bound");
+	}
+
+	/**
+	 * Creates the down-sets, the up-sets and the upper covers as bitsets of positions.
+	 */
+	private void createSets(){
+		this.downSets = new long[this.size * this.words];
+		this.upSets = new long[this.size * this.words];
+		this.upperCovers = new long[this.size * this.words];
+
+		//the lower covers precede an element, so their down-sets are complete
+		for(int k = 0; k < this.size; k++){
+			int offset = k * this.words;
+
+			this.downSets[offset + (k >>> 6)] |= 1L << k;
+
+			for(int child : this.lower[k]){
+				int childOffset = child * this.words;
+
+				for(int w = 0; w < this.words; w++)
+					this.downSets[offset + w] |= this.downSets[childOffset + w];
+
+				this.upperCovers[childOffset + (k >>> 6)] |= 1L << k;
+			}
+		}
+
+		for(int k = this.size - 1; k >= 0; k--){
+			int offset = k * this.words;
+
+			this.upSets[offset + (k >>> 6)] |= 1L << k;
+
+			for(int parent : this.upper[k]){
+				int parentOffset = parent * this.words;
+
+				for(int w = 0; w < this.words; w++)
+					this.upSets[offset + w] |= this.upSets[parentOffset + w];
+			}
+		}
+	}
+
+	/**
+	 * Gets the lower covers of the elements by their positions in the storage.
+	 *
+	 * @param storage contains all elements of the lattice.
+	 * @return The indices of the lower covers of each element.
+	 */
+	private static int[][] getLowerCovers(LatticeElementStorage storage){
+		HashMap<LatticeElement, Integer> indices = new HashMap<LatticeElement, Integer>();
+		int[][] lower = new int[storage.size()][];
+
+		for(int i = 0; i < storage.size(); i++)
+			indices.put(storage.get(i), i);
+
+		//the dependents of an element are its lower covers
+		for(int i = 0; i < storage.size(); i++){
+			LatticeElementCollection children = storage.get(i).getElements();
+			int j = 0;
+
+			lower[i] = new int[children.size()];
+			for(LatticeElement child : children)
+				lower[i][j++] = indices.get(child);
+		}
+
+		return lower;
+	}
+
+	/**
+	 * Inverts the covers, so the lower covers become upper covers.
+	 *
+	 * @param covers are the covers of each element.
+	 * @return The inverted covers.
+	 */
+	private static int[][] invert(int[][] covers){
+		int[] counts = new int[covers.length];
+		int[][] inverted = new int[covers.length][];
+
+		for(int[] neighbours : covers){
+			for(int neighbour : neighbours)
+				counts[neighbour]++;
+		}
+
+		for(int i = 0; i < covers.length; i++)
+			inverted[i] = new int[counts[i]];
+
+		Arrays.fill(counts, 0);
+
+		for(int i = 0; i < covers.length; i++){
+			for(int neighbour : covers[i])
+				inverted[neighbour][counts[neighbour]++] = i;
+		}
+
+		return inverted;
+	}
+}
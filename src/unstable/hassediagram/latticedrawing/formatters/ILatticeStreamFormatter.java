@@ -0,0 +1,19 @@
+package unstable.hassediagram.latticedrawing.formatters;
+
+import java.io.*;
+
+/**
+ * This interface provides the functionality to invoke a formatting operation writing straight to a stream.
+ * 
+ * @author Eugen Petrosean
+ * @since 2010-09-22
+ */
+public interface ILatticeStreamFormatter extends ILatticeFormatter {
+	/**
+	 * Converts to a new format and writes the data to the stream.
+	 * 
+	 * @param stream is the output stream receiving the data in a new format.
+	 * @throws IOException if the stream cannot be written.
+	 */
+	public void Format(OutputStream stream) throws IOException;
+}
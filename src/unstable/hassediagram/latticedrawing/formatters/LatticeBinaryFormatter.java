@@ -0,0 +1,132 @@
+package unstable.hassediagram.latticedrawing.formatters;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This class represents a formatter for converting a lattice to a compact little-endian binary format.
+ * The elements are written in the same order as by the json formatter, the coordinates are quantized
+ * to 16 bit integers and the dependents are stored as a compressed sparse row list of element positions.
+ * <pre>
+ * {@code
+ * 	offset                 type        content
+ * 	0                      char[4]     "LATB"
+ * 	4                      uint16      version
+ * 	6                      uint16      count of elements n
+ * 	8                      uint32      count of dependents m
+ * 	12                     float32     scale, a coordinate is the stored value divided by the scale
+ * 	16                     int16[n]    names
+ * 	16 + 2n                int16[n]    x coordinates
+ * 	16 + 4n                int16[n]    y coordinates
+ * 	16 + 6n                uint8[n]    markable flags, padded to a multiple of 4 bytes
+ * 	p                      uint32[n+1] offsets of the dependents of each element
+ * 	p + 4(n+1)             uint16[m]   positions of the dependents
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-09-29
+ */
+public class LatticeBinaryFormatter implements ILatticeStreamFormatter {
+	public static final short version = 1;
+	private static final byte[] magic = { 'L', 'A', 'T', 'B' };
+	private static final int headerSize = 16;
+	private static final float maxScale = 1024f;
+
+	private Lattice lattice;
+
+	/**
+	 * Constructor
+	 * @param lattice specifies the structure which will be converted to the binary format.
+	 */
+	public LatticeBinaryFormatter(Lattice lattice){
+		this.lattice = lattice;
+	}
+
+	/**
+	 * Converts to the binary format.
+	 *
+	 * @return The lattice structure in binary format encoded as base64.
+	 */
+	public String Format() {
+		return Base64.getEncoder().encodeToString(this.encode().array());
+	}
+
+	/**
+	 * Converts to the binary format and writes it to the stream.
+	 *
+	 * @param stream is the output stream receiving the lattice structure in binary format.
+	 * @throws IOException if the stream cannot be written.
+	 */
+	public void Format(OutputStream stream) throws IOException {
+		stream.write(this.encode().array());
+	}
+
+	/**
+	 * Encodes the lattice structure.
+	 *
+	 * @return A buffer containing the lattice structure in binary format.
+	 */
+	private ByteBuffer encode(){
+		Vector<LatticeElement> elements = new Vector<LatticeElement>();
+		HashMap<LatticeElement, Integer> positions = new HashMap<LatticeElement, Integer>();
+		float maxValue = 0f;
+		int count = 0;
+
+		for(LatticeElementLevel level : this.lattice.getLevels()){
+			for(LatticeElement e : level){
+				LatticePoint point = e.getPoint();
+
+				positions.put(e, elements.size());
+				elements.add(e);
+
+				count += e.getElements().size();
+				maxValue = Math.max(maxValue, Math.max(Math.abs(point.getX()), Math.abs(point.getY())));
+			}
+		}
+
+		int size = elements.size();
+		int flagsSize = (size + 3) & ~3;
+		float scale = maxValue > 0f ? Math.min(maxScale, Short.MAX_VALUE / maxValue) : maxScale;
+
+		ByteBuffer buffer = ByteBuffer.allocate(headerSize + 6 * size + flagsSize + 4 * (size + 1) + 2 * count);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.put(magic);
+		buffer.putShort(version);
+		buffer.putShort((short)size);
+		buffer.putInt(count);
+		buffer.putFloat(scale);
+
+		for(LatticeElement e : elements)
+			buffer.putShort((short)((int)e.getName().toCharArray()[0] - 97));
+
+		for(LatticeElement e : elements)
+			buffer.putShort((short)Math.round(e.getPoint().getX() * scale));
+
+		for(LatticeElement e : elements)
+			buffer.putShort((short)Math.round(e.getPoint().getY() * scale));
+
+		for(LatticeElement e : elements)
+			buffer.put((byte)(e.getMarkable() ? 1 : 0));
+
+		buffer.position(buffer.position() + flagsSize - size);
+
+		int offset = 0;
+		buffer.putInt(offset);
+		for(LatticeElement e : elements){
+			offset += e.getElements().size();
+			buffer.putInt(offset);
+		}
+
+		for(LatticeElement e : elements){
+			for(LatticeElement child : e.getElements())
+				buffer.putShort((short)(int)positions.get(child));
+		}
+
+		return buffer;
+	}
+}
@@ -17,13 +17,19 @@ public class LatticeFormatFactory {
 	 * 
 	 * @return The specified formatter.
 	 */
-	public static ILatticeFormatter CreateFormatter(Lattice lattice, LatticeFormatType format){
+	public static ILatticeStreamFormatter CreateFormatter(Lattice lattice, LatticeFormatType format){
 		switch(format)
 		{
 			case Json:
 				return new LatticeJsonFormatter(lattice);
 			case Latex:
 				return new LatticeLatexFormatter(lattice) ;
+			case Binary:
+				return new LatticeBinaryFormatter(lattice);
+			case Svg:
+				return new LatticeSvgFormatter(lattice);
+			case Png:
+				return new LatticePngFormatter(lattice);
 		}
 		
 		return null;
@@ -7,6 +7,44 @@ package unstable.hassediagram.latticedrawing.formatters;
  * @since 2010-06-01
  */
 public enum LatticeFormatType {
-	Latex,
-	Json,
+	Latex("application/x-latex"),
+	Json("application/json"),
+	Binary("application/octet-stream"),
+	Svg("image/svg+xml"),
+	Png("image/png");
+	
+	private String contentType;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param contentType is the mime type of the format.
+	 */
+	private LatticeFormatType(String contentType){
+		this.contentType = contentType;
+	}
+	
+	/**
+	 * Gets the mime type of the format.
+	 * 
+	 * @return The content type used when the format is sent over http.
+	 */
+	public String getContentType(){
+		return this.contentType;
+	}
+	
+	/**
+	 * Finds the format type by its name ignoring the case.
+	 * 
+	 * @param value is the name of the format type.
+	 * @return The matching format type or the json format if no such type exists.
+	 */
+	public static LatticeFormatType parse(String value){
+		for(LatticeFormatType type : LatticeFormatType.values()){
+			if(type.name().equalsIgnoreCase(value))
+				return type;
+		}
+		
+		return Json;
+	}
 }
@@ -0,0 +1,77 @@
+package unstable.hassediagram.latticedrawing.formatters;
+
+import java.awt.image.*;
+import java.util.concurrent.*;
+
+/**
+ * This class represents a pool of square images reused by the raster formatters,
+ * so rendering many lattices of the same size does not allocate a new image each time.
+ * Only a few common sizes are pooled, since the size is chosen by the client,
+ * so the pool never holds more than a few megabytes. Images of other sizes are created for each rendering.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-10-13
+ */
+public class LatticeImagePool {
+	private static final int maxImages = 4;
+	private static final int[] pooledSizes = { 100, 200, LatticePngFormatter.defaultSize, 800 };
+	private static final ConcurrentLinkedQueue<BufferedImage>[] images = createQueues();
+
+	/**
+	 * Takes an image from the pool or creates a new one if the pool contains no image of the size.
+	 *
+	 * @param size is the width and the height of the image.
+	 * @return An image whose content is undefined.
+	 */
+	public static BufferedImage acquire(Integer size){
+		ConcurrentLinkedQueue<BufferedImage> queue = getQueue(size);
+		BufferedImage image = queue != null ? queue.poll() : null;
+
+		if(image == null)
+			image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+
+		return image;
+	}
+
+	/**
+	 * Returns an image to the pool. The image is dropped if its size is not pooled or the pool is full.
+	 *
+	 * @param image which is not used any more.
+	 */
+	public static void release(BufferedImage image){
+		ConcurrentLinkedQueue<BufferedImage> queue = getQueue(image.getWidth());
+
+		if(queue != null && queue.size() < maxImages)
+			queue.offer(image);
+	}
+
+	/**
+	 * Gets the queue of the free images of a size.
+	 *
+	 * @param size is the width and the height of the images.
+	 * @return The queue of the free images or null if the size is not pooled.
+	 */
+	private static ConcurrentLinkedQueue<BufferedImage> getQueue(Integer size){
+		for(int i = 0; i < pooledSizes.length; i++){
+			if(pooledSizes[i] == size)
+				return images[i];
+		}
+
+		return null;
+	}
+
+	/**
+	 * Creates an empty queue for each pooled size.
+	 *
+	 * @return The queues of the free images.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static ConcurrentLinkedQueue<BufferedImage>[] createQueues(){
+		ConcurrentLinkedQueue<BufferedImage>[] queues = new ConcurrentLinkedQueue[pooledSizes.length];
+
+		for(int i = 0; i < queues.length; i++)
+			queues[i] = new ConcurrentLinkedQueue<BufferedImage>();
+
+		return queues;
+	}
+}
@@ -1,5 +1,7 @@
 package unstable.hassediagram.latticedrawing.formatters;
 
+import java.io.*;
+
 import unstable.hassediagram.latticedrawing.core.*;
 
 /**
@@ -8,7 +10,7 @@ import unstable.hassediagram.latticedrawing.core.*;
  * @author Eugen Petrosean
  * @since 2010-06-01
  */
-public class LatticeJsonFormatter implements ILatticeFormatter {
+public class LatticeJsonFormatter extends LatticeTextFormatter {
 	
 	private Lattice lattice;
 	
@@ -23,54 +25,50 @@ public class LatticeJsonFormatter implements ILatticeFormatter {
 	/**
 	 * Converts to the Json format.
 	 * 
-	 * @return The lattice structure in json format.
+	 * @param writer is the writer receiving the lattice structure in json format.
+	 * @throws IOException if the writer cannot be written.
 	 */
-	public String Format() {
+	public void Format(Writer writer) throws IOException {
 		LatticeElementLevelCollection storage = this.lattice.getLevels();
 		
-		String json = "[";
+		writer.write("[");
 		
 		for(int k = 0; k < storage.size(); k++){
 			LatticeElementLevel level = storage.get(k);
 			
 			for(int i = 0; i < level.size(); i++){
 				LatticeElement e = level.get(i);
-				
-				String dependents = "[";
+				LatticePoint point = e.getPoint();
+			
+				writer.write("{");
+				writer.write("\"name\":\"" + ((int)e.getName().toCharArray()[0] - 97) + "\",");
+				writer.write("\"markable\":" + e.getMarkable() + ",");
+				writer.write("\"x\":" + point.getX() + ",");
+				writer.write("\"y\":" + point.getY() + ",");
+				writer.write("\"dependents\":[");
 			
 				for(int j = 0; j < e.getElements().size(); j++)
 				{
 					LatticeElement child = e.getElements().get(j);
 				
-					dependents += "\"" + ((int)child.getName().toCharArray()[0] - 97) + "\"";
+					writer.write("\"" + ((int)child.getName().toCharArray()[0] - 97) + "\"");
 				
 					if(j < e.getElements().size() - 1)
-						dependents +=  ","; 
+						writer.write(","); 
 				}
 			
-				dependents += "]";
-			
-				LatticePoint point = e.getPoint();
-			
-				json += "{";
-				json += "\"name\":\"" + ((int)e.getName().toCharArray()[0] - 97) + "\",";
-				json += "\"markable\":" + e.getMarkable() + ",";
-				json += "\"x\":" + point.getX() + ",";
-				json += "\"y\":" + point.getY() + ",";
-				json += "\"dependents\":" + dependents + "";
-				json += "}";
+				writer.write("]");
+				writer.write("}");
 				
 				if(i < level.size() - 1)
-					json += ",";
+					writer.write(",");
 			}
 			
 			if(k < storage.size() - 1)
-				json += ",";
+				writer.write(",");
 		}
 		
-		json += "]";
-		
-		return json;
+		writer.write("]");
 	}
 
 }
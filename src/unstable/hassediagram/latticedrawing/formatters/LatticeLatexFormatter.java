@@ -1,5 +1,7 @@
 package unstable.hassediagram.latticedrawing.formatters;
 
+import java.io.*;
+
 import unstable.hassediagram.latticedrawing.core.*;
 
 /**
@@ -8,7 +10,7 @@ import unstable.hassediagram.latticedrawing.core.*;
  * @author Eugen Petrosean
  * @since 2010-06-01
  */
-public class LatticeLatexFormatter implements ILatticeFormatter {
+public class LatticeLatexFormatter extends LatticeTextFormatter {
 	
 	private Lattice lattice;
 	
@@ -22,18 +24,17 @@ public class LatticeLatexFormatter implements ILatticeFormatter {
 	
 	/**
 	 * Converts to the latex format.
+	 * The nodes are written first and the lines between them in a second pass over the levels.
 	 * 
-	 * @return The lattice structure in latex format.
+	 * @param writer is the writer receiving the lattice structure in latex format.
+	 * @throws IOException if the writer cannot be written.
 	 */
-	public String Format() {
-		String latex = "";
-		String dependents = "";
-		
+	public void Format(Writer writer) throws IOException {
 		LatticeElementLevelCollection storage = this.lattice.getLevels();
 		
-		latex += "\\psset{xunit=10mm,yunit=10mm}\n";
-		latex += "\\pspicture(-10,-10)(20,20)\n";
-		latex += "\\psset{linewidth=0.3pt,arrowsize=3pt}\n";
+		writer.write("\\psset{xunit=10mm,yunit=10mm}\n");
+		writer.write("\\pspicture(-10,-10)(20,20)\n");
+		writer.write("\\psset{linewidth=0.3pt,arrowsize=3pt}\n");
 		
 		for(int k = 0; k < storage.size(); k++){
 			LatticeElementLevel level = storage.get(k);
@@ -43,22 +44,27 @@ public class LatticeLatexFormatter implements ILatticeFormatter {
 				LatticePoint point = e.getPoint();
 				Integer caption = (int)e.getName().toCharArray()[0] - 97;
 				
-				latex += "\\cnode("+ point.getX() +", "+ point.getY() +"){0.5}{"+ e.getName() +"}\n"; 
-				latex += "\\rput("+ point.getX() +", "+ point.getY() +"){$"+ caption +"$}\n";
+				writer.write("\\cnode("+ point.getX() +", "+ point.getY() +"){0.5}{"+ e.getName() +"}\n"); 
+				writer.write("\\rput("+ point.getX() +", "+ point.getY() +"){$"+ caption +"$}\n");
+			}
+		}
+		
+		for(int k = 0; k < storage.size(); k++){
+			LatticeElementLevel level = storage.get(k);
+			
+			for(int i = 0; i < level.size(); i++){
+				LatticeElement e = level.get(i);
 				
 				for(int j = 0; j < e.getElements().size(); j++)
 				{
 					LatticeElement child = e.getElements().get(j);
 					
-					dependents += "\\ncline{"+ e.getName() +"}{"+ child.getName() +"}\n"; 
+					writer.write("\\ncline{"+ e.getName() +"}{"+ child.getName() +"}\n"); 
 				}
 			}
 		}
 		
-		latex += dependents;
-		latex += "\\endpspicture";
-		
-		return latex;
+		writer.write("\\endpspicture");
 	}
 
 }
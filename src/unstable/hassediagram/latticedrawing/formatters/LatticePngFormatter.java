@@ -0,0 +1,187 @@
+package unstable.hassediagram.latticedrawing.formatters;
+
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import javax.imageio.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This class represents a formatter for drawing a lattice as a square png image.
+ * The drawing looks like the one of the svg formatter and is scaled down to fit into the image.
+ * The images are rendered with java2d in headless mode and are taken from the image pool.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-10-13
+ */
+public class LatticePngFormatter implements ILatticeStreamFormatter {
+	public static final int defaultSize = 400;
+	public static final int minSize = 16;
+	public static final int maxSize = 2048;
+	private static final float maxScale = 50f;
+	private static final float radius = 12f;
+
+	private static final Color background = Color.WHITE;
+	private static final Color line = Color.BLACK;
+	private static final Color text = new Color(0x333333);
+	private static final Color fill = new Color(0xe6e6e6);
+	private static final Color stroke = new Color(0x999999);
+	private static final Color markableFill = new Color(0xbcccda);
+	private static final Color markableStroke = new Color(0x8a9aa8);
+
+	static {
+		//the servlet container has got no display
+		System.setProperty("java.awt.headless", "true");
+	}
+
+	private Lattice lattice;
+	private Integer size;
+
+	/**
+	 * Constructor
+	 * @param lattice specifies the structure which will be drawn.
+	 */
+	public LatticePngFormatter(Lattice lattice){
+		this(lattice, defaultSize);
+	}
+
+	/**
+	 * Constructor
+	 * @param lattice specifies the structure which will be drawn.
+	 * @param size is the width and the height of the image in pixels.
+	 */
+	public LatticePngFormatter(Lattice lattice, Integer size){
+		this.lattice = lattice;
+		this.size = Math.max(minSize, Math.min(maxSize, size));
+	}
+
+	/**
+	 * Gets the width and the height of the image.
+	 *
+	 * @return The size of the image in pixels.
+	 */
+	public Integer getSize(){
+		return this.size;
+	}
+
+	/**
+	 * Converts to the png format.
+	 *
+	 * @return The png image encoded as base64.
+	 */
+	public String Format() {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+		try {
+			this.Format(stream);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		return Base64.getEncoder().encodeToString(stream.toByteArray());
+	}
+
+	/**
+	 * Converts to the png format and writes it to the stream.
+	 *
+	 * @param stream is the output stream receiving the png image.
+	 * @throws IOException if the stream cannot be written.
+	 */
+	public void Format(OutputStream stream) throws IOException {
+		BufferedImage image = LatticeImagePool.acquire(this.size);
+
+		try {
+			Graphics2D graphics = image.createGraphics();
+
+			try {
+				this.draw(graphics);
+			} finally {
+				graphics.dispose();
+			}
+
+			ImageIO.write(image, "png", stream);
+		} finally {
+			LatticeImagePool.release(image);
+		}
+	}
+
+	/**
+	 * Draws the lines first, so the circles and the captions are drawn above them.
+	 *
+	 * @param graphics of the image.
+	 */
+	private void draw(Graphics2D graphics){
+		LatticeElementLevelCollection storage = this.lattice.getLevels();
+		float minX = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+
+		for(LatticeElementLevel level : storage){
+			for(LatticeElement e : level){
+				LatticePoint point = e.getPoint();
+
+				minX = Math.min(minX, point.getX());
+				maxX = Math.max(maxX, point.getX());
+				minY = Math.min(minY, point.getY());
+				maxY = Math.max(maxY, point.getY());
+			}
+		}
+
+		//keeps the proportions of the svg drawing, whose margin is as large as the circle
+		float extent = Math.max(maxX - minX, maxY - minY);
+		float scale = Math.min(maxScale, this.size / (extent + 2 * radius / maxScale * 1.25f));
+		float r = radius * scale / maxScale;
+		float offsetX = (this.size - (maxX - minX) * scale) / 2 - minX * scale;
+		float offsetY = (this.size - (maxY - minY) * scale) / 2 + maxY * scale;
+
+		graphics.setColor(background);
+		graphics.fillRect(0, 0, this.size, this.size);
+		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+		graphics.setColor(line);
+		graphics.setStroke(new BasicStroke(Math.max(0.4f * scale / maxScale, 0.25f)));
+		for(LatticeElementLevel level : storage){
+			for(LatticeElement e : level){
+				for(LatticeElement child : e.getElements()){
+					graphics.draw(new Line2D.Float(offsetX + e.getPoint().getX() * scale, offsetY - e.getPoint().getY() * scale,
+							offsetX + child.getPoint().getX() * scale, offsetY - child.getPoint().getY() * scale));
+				}
+			}
+		}
+
+		graphics.setStroke(new BasicStroke(Math.max(scale / maxScale, 0.25f)));
+		for(LatticeElementLevel level : storage){
+			for(LatticeElement e : level){
+				Ellipse2D circle = new Ellipse2D.Float(offsetX + e.getPoint().getX() * scale - r,
+						offsetY - e.getPoint().getY() * scale - r, 2 * r, 2 * r);
+
+				graphics.setColor(e.getMarkable() ? markableFill : fill);
+				graphics.fill(circle);
+				graphics.setColor(e.getMarkable() ? markableStroke : stroke);
+				graphics.draw(circle);
+			}
+		}
+
+		//captions are not readable in small thumbnails
+		if(r < 6f)
+			return;
+
+		graphics.setColor(text);
+		graphics.setFont(new Font("SansSerif", Font.PLAIN, Math.round(11 * scale / maxScale)));
+		FontMetrics metrics = graphics.getFontMetrics();
+
+		for(LatticeElementLevel level : storage){
+			for(LatticeElement e : level){
+				String name = Integer.toString((int)e.getName().toCharArray()[0] - 97);
+
+				graphics.drawString(name, offsetX + e.getPoint().getX() * scale - metrics.stringWidth(name) / 2f,
+						offsetY - e.getPoint().getY() * scale + 4f * scale / maxScale);
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package unstable.hassediagram.latticedrawing.formatters;
+
+import java.io.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This class represents a formatter for drawing a lattice as a scalable vector graphic.
+ * The drawing looks like the one of the lattice viewer, so a browser can show it without any script.
+ * <pre>
+ * {@code
+ * <svg xmlns="http://www.w3.org/2000/svg" width="110.0" height="160.0" viewBox="0 0 110.0 160.0">
+ *		<style>.circle{...}.markable-circle{...}</style>
+ *		<g stroke="#000000" stroke-width="0.4">
+ *			<line x1="55.0" y1="30.0" x2="30.0" y2="80.0"/>
+ *		</g>
+ *		<g stroke-width="1">
+ *			<circle cx="55.0" cy="30.0" r="12" class="circle"/>
+ *		</g>
+ *		<g font-family="Tahoma, Verdana" font-size="11" fill="#333333" text-anchor="middle">
+ *			<text x="55.0" y="34.0">1</text>
+ *		</g>
+ * </svg>
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-10-06
+ */
+public class LatticeSvgFormatter extends LatticeTextFormatter {
+	private static final float scale = 50f;
+	private static final float margin = 30f;
+	private static final int radius = 12;
+
+	private Lattice lattice;
+	private float minX;
+	private float maxY;
+
+	/**
+	 * Constructor
+	 * @param lattice specifies the structure which will be drawn.
+	 */
+	public LatticeSvgFormatter(Lattice lattice){
+		this.lattice = lattice;
+	}
+
+	/**
+	 * Converts to the svg format.
+	 * The lines are written first, so the circles and the captions are drawn above them.
+	 *
+	 * @param writer is the writer receiving the lattice drawing.
+	 * @throws IOException if the writer cannot be written.
+	 */
+	public void Format(Writer writer) throws IOException {
+		LatticeElementLevelCollection storage = this.lattice.getLevels();
+		float maxX = -Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+
+		this.minX = Float.MAX_VALUE;
+		this.maxY = -Float.MAX_VALUE;
+
+		for(LatticeElementLevel level : storage){
+			for(LatticeElement e : level){
+				LatticePoint point = e.getPoint();
+
+				this.minX = Math.min(this.minX, point.getX());
+				this.maxY = Math.max(this.maxY, point.getY());
+				maxX = Math.max(maxX, point.getX());
+				minY = Math.min(minY, point.getY());
+			}
+		}
+
+		String width = this.format((maxX - this.minX) * scale + 2 * margin);
+		String height = this.format((this.maxY - minY) * scale + 2 * margin);
+
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height + "\" " +
+				"viewBox=\"0 0 " + width + " " + height + "\">\n");
+		writer.write("<style>.circle{fill:#e6e6e6;stroke:#999999}.markable-circle{fill:#bcccda;stroke:#8a9aa8}</style>\n");
+
+		writer.write("<g stroke=\"#000000\" stroke-width=\"0.4\">\n");
+		for(LatticeElementLevel level : storage){
+			for(LatticeElement e : level){
+				for(LatticeElement child : e.getElements()){
+					writer.write("<line x1=\"" + this.getX(e) + "\" y1=\"" + this.getY(e) + "\" " +
+							"x2=\"" + this.getX(child) + "\" y2=\"" + this.getY(child) + "\"/>\n");
+				}
+			}
+		}
+		writer.write("</g>\n");
+
+		writer.write("<g stroke-width=\"1\">\n");
+		for(LatticeElementLevel level : storage){
+			for(LatticeElement e : level){
+				writer.write("<circle cx=\"" + this.getX(e) + "\" cy=\"" + this.getY(e) + "\" r=\"" + radius + "\" " +
+						"class=\"" + (e.getMarkable() ? "markable-circle" : "circle") + "\"/>\n");
+			}
+		}
+		writer.write("</g>\n");
+
+		writer.write("<g font-family=\"Tahoma, Verdana\" font-size=\"11\" fill=\"#333333\" text-anchor=\"middle\">\n");
+		for(LatticeElementLevel level : storage){
+			for(LatticeElement e : level){
+				writer.write("<text x=\"" + this.getX(e) + "\" y=\"" + this.format(e.getPoint().getY(), 4f) + "\">" +
+						((int)e.getName().toCharArray()[0] - 97) + "</text>\n");
+			}
+		}
+		writer.write("</g>\n");
+
+		writer.write("</svg>");
+	}
+
+	/**
+	 * Gets the x coordinate of an element in the drawing.
+	 *
+	 * @param e is the lattice element.
+	 * @return The formatted x coordinate.
+	 */
+	private String getX(LatticeElement e){
+		return this.format((e.getPoint().getX() - this.minX) * scale + margin);
+	}
+
+	/**
+	 * Gets the y coordinate of an element in the drawing, where the maximal element is located on the top.
+	 *
+	 * @param e is the lattice element.
+	 * @return The formatted y coordinate.
+	 */
+	private String getY(LatticeElement e){
+		return this.format(e.getPoint().getY(), 0f);
+	}
+
+	/**
+	 * Formats a y coordinate of the lattice as a y coordinate of the drawing.
+	 *
+	 * @param y is the y coordinate of the lattice.
+	 * @param offset is added to the coordinate in the drawing.
+	 * @return The formatted y coordinate.
+	 */
+	private String format(float y, float offset){
+		return this.format((this.maxY - y) * scale + margin + offset);
+	}
+
+	/**
+	 * Formats a coordinate of the drawing rounded to two decimal places.
+	 *
+	 * @param value is the coordinate.
+	 * @return The formatted coordinate.
+	 */
+	private String format(float value){
+		return Float.toString(Math.round(value * 100) / 100f);
+	}
+}
@@ -0,0 +1,54 @@
+package unstable.hassediagram.latticedrawing.formatters;
+
+import java.io.*;
+
+/**
+ * This class represents a base for formatters converting a lattice to a text format.
+ * The text is written piece by piece to a writer, so the whole representation never has to be kept in memory.
+ * 
+ * @author Eugen Petrosean
+ * @since 2010-09-22
+ */
+public abstract class LatticeTextFormatter implements ILatticeStreamFormatter {
+	private static final int bufferSize = 8192;
+	private static final String encoding = "UTF-8";
+	
+	/**
+	 * Converts to the text format.
+	 * 
+	 * @return The lattice structure in the text format.
+	 */
+	public String Format() {
+		StringWriter writer = new StringWriter();
+		
+		try{
+			this.Format(writer);
+		}
+		catch(IOException e){
+			//a string writer does not throw
+		}
+		
+		return writer.toString();
+	}
+	
+	/**
+	 * Converts to the text format and writes it encoded as UTF-8 through a buffer of a fixed size.
+	 * 
+	 * @param stream is the output stream receiving the text.
+	 * @throws IOException if the stream cannot be written.
+	 */
+	public void Format(OutputStream stream) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(stream, encoding), bufferSize);
+		
+		this.Format(writer);
+		writer.flush();
+	}
+	
+	/**
+	 * Converts to the text format and writes it to the writer.
+	 * 
+	 * @param writer is the writer receiving the text.
+	 * @throws IOException if the writer cannot be written.
+	 */
+	public abstract void Format(Writer writer) throws IOException;
+}
@@ -0,0 +1,19 @@
+package unstable.hassediagram.latticedrawing.layouts;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This interface provides the functionality to arrange the elements of a lattice in the plain.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-09-01
+ */
+public interface ILatticeLayout {
+	/**
+	 * Arranges the lattice elements.
+	 * The distances and the levels of the lattice have been already calculated when this method is invoked.
+	 *
+	 * @param lattice whose elements will be positioned.
+	 */
+	void arrange(Lattice lattice);
+}
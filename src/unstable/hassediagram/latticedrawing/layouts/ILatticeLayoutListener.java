@@ -0,0 +1,21 @@
+package unstable.hassediagram.latticedrawing.layouts;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This interface is used to observe a layout while it is arranging the lattice elements.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-11-10
+ */
+public interface ILatticeLayoutListener {
+	/**
+	 * Is called when the layout has moved the lattice elements. The first call delivers the initial positions,
+	 * so every lattice element has got its point, each following call the positions after an iteration.
+	 * Only the x coordinates change, the y coordinates are given by the levels.
+	 *
+	 * @param lattice whose elements have been moved.
+	 * @param iteration is the count of finished iterations, zero for the initial positions.
+	 */
+	public void arranged(Lattice lattice, Integer iteration);
+}
@@ -0,0 +1,120 @@
+package unstable.hassediagram.latticedrawing.layouts;
+
+import java.util.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This class represents the additive layout of a hasse diagram.
+ * Each join-irreducible element gets a vector and every element is placed at the sum of the vectors
+ * of all join-irreducible elements located below it. The y coordinate is still given by the level.
+ * <pre>
+ * {@code
+ * 		J = {j | j has exactly one lower cover}
+ *
+ * 		x(e) = sum of v(j) for all j element of J with j <= e
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-09-01
+ */
+public class LatticeAdditiveLayout implements ILatticeLayout {
+	private static final float minLength = 1f;
+
+	/**
+	 * Arranges the lattice elements.
+	 *
+	 * @param lattice whose elements will be positioned.
+	 */
+	public void arrange(Lattice lattice){
+		LatticeElementStorage storage = lattice.getStorage();
+		LatticeReachability reachability = lattice.getReachability();
+
+		//a join-irreducible element of a finite lattice has exactly one lower cover
+		Vector<LatticeElement> irreducibles = new Vector<LatticeElement>();
+		for(LatticeElement e : storage){
+			if(e.getElements().size() == 1)
+				irreducibles.add(e);
+		}
+
+		//orders the join-irreducible elements from left to right by their descriptor positions
+		Collections.sort(irreducibles, new Comparator<LatticeElement>(){
+			public int compare(LatticeElement e1, LatticeElement e2){
+				int result = e1.getPoint().getX().compareTo(e2.getPoint().getX());
+
+				return result != 0 ? result : e1.getLevel().compareTo(e2.getLevel());
+			}
+		});
+
+		lattice.notifyLayoutListener(0);
+
+		//creates the vectors symmetrically around the y axis
+		float[] vectors = new float[storage.size()];
+		for(int i = 0; i < irreducibles.size(); i++)
+			vectors[reachability.getIndex(reachability.getPosition(irreducibles.get(i)))] = i - (irreducibles.size() - 1) / 2.0f;
+
+		//the vectors are summed in the order of the storage
+		int[] positions = new int[irreducibles.size()];
+		int[] order = new int[irreducibles.size()];
+		int count = 0;
+
+		for(int j = 0; j < storage.size(); j++){
+			if(storage.get(j).getElements().size() == 1){
+				order[count] = j;
+				positions[count++] = reachability.getPosition(j);
+			}
+		}
+
+		for(int i = 0; i < storage.size(); i++){
+			int position = reachability.getPosition(i);
+			float x = 0f;
+
+			for(int k = 0; k < count; k++){
+				if(reachability.leq(positions[k], position))
+					x += vectors[order[k]];
+			}
+
+			storage.get(i).getPoint().setX(x);
+		}
+
+		for(LatticeElementLevel level : lattice.getLevels())
+			this.separate(level);
+
+		lattice.notifyLayoutListener(1);
+	}
+
+	/**
+	 * Separates elements of the same level whose sums are too close to each other
+	 * without changing their order and their mean position.
+	 *
+	 * @param level whose elements will be separated.
+	 */
+	private void separate(LatticeElementLevel level){
+		if(level.size() < 2)
+			return;
+
+		Vector<LatticeElement> elements = new Vector<LatticeElement>(level);
+		Collections.sort(elements, new Comparator<LatticeElement>(){
+			public int compare(LatticeElement e1, LatticeElement e2){
+				return e1.getPoint().getX().compareTo(e2.getPoint().getX());
+			}
+		});
+
+		float[] positions = new float[elements.size()];
+		float shift = 0f;
+
+		positions[0] = elements.get(0).getPoint().getX();
+		for(int i = 1; i < elements.size(); i++){
+			float x = elements.get(i).getPoint().getX();
+			positions[i] = Math.max(x, positions[i - 1] + minLength);
+			shift += positions[i] - x;
+		}
+
+		//keeps the level centered where the sums have placed it
+		shift /= elements.size();
+
+		for(int i = 0; i < elements.size(); i++)
+			elements.get(i).getPoint().setX(positions[i] - shift);
+	}
+}
@@ -0,0 +1,332 @@
+package unstable.hassediagram.latticedrawing.layouts;
+
+import java.util.*;
+
+/**
+ * This class represents one level of the multilevel hierarchy of a hasse diagram.
+ * Each node is a cluster of lattice elements occupying one or more rows, where a row is a level of the lattice.
+ * The finest graph contains a node per lattice element, each coarser graph is created by merging chains and siblings.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-09-08
+ */
+class LatticeCoarseGraph {
+	private int size;
+	private int rowCount;
+	private int[][] up;
+	private int[][] down;
+	private int[] minRows;
+	private int[][] widths;
+	private int[][] children;
+	private boolean[] chains;
+	private float[] x;
+	private int[][] rowNodes;
+	private int[][] rowWidths;
+
+	/**
+	 * Constructor
+	 *
+	 * @param rowCount is the count of rows of the lattice.
+	 * @param up contains the upper neighbours of each node.
+	 * @param down contains the lower neighbours of each node.
+	 * @param minRows contains the first row of each node.
+	 * @param widths contains the count of elements of each node per row beginning with its first row.
+	 * @param children contains the nodes of the finer graph merged into each node.
+	 * @param chains indicates for each node whether its children have been merged as a chain.
+	 * @param x contains the initial position of each node.
+	 */
+	LatticeCoarseGraph(int rowCount, int[][] up, int[][] down, int[] minRows, int[][] widths, int[][] children, boolean[] chains, float[] x){
+		this.size = up.length;
+		this.rowCount = rowCount;
+		this.up = up;
+		this.down = down;
+		this.minRows = minRows;
+		this.widths = widths;
+		this.children = children;
+		this.chains = chains;
+		this.x = x;
+
+		this.createRows();
+	}
+
+	/**
+	 * Gets the count of nodes.
+	 *
+	 * @return The count of nodes.
+	 */
+	int size(){
+		return this.size;
+	}
+
+	/**
+	 * Gets the positions of the nodes.
+	 *
+	 * @return The x coordinate of each node.
+	 */
+	float[] getX(){
+		return this.x;
+	}
+
+	/**
+	 * Creates a coarser graph by merging each node with at most one other node.
+	 * A node is merged with its only upper neighbour if it is the only lower neighbour of it (chain),
+	 * otherwise with a node occupying the same rows and having the same upper neighbours (siblings).
+	 *
+	 * @return The coarser graph.
+	 */
+	LatticeCoarseGraph coarsen(){
+		int[] clusters = new int[this.size];
+		Arrays.fill(clusters, -1);
+
+		Vector<int[]> members = new Vector<int[]>();
+		BitSet chains = new BitSet();
+		HashMap<String, Integer> siblings = new HashMap<String, Integer>();
+
+		for(int v = 0; v < this.size; v++){
+			if(clusters[v] >= 0)
+				continue;
+
+			//merges a chain
+			if(this.up[v].length == 1){
+				int u = this.up[v][0];
+
+				if(clusters[u] < 0 && this.down[u].length == 1){
+					chains.set(members.size());
+					clusters[v] = clusters[u] = members.size();
+					members.add(new int[]{ u, v });
+					continue;
+				}
+			}
+
+			//merges siblings
+			String key = this.minRows[v] + ":" + this.widths[v].length + ":" + Arrays.toString(this.up[v]);
+			Integer sibling = siblings.remove(key);
+
+			if(sibling != null && clusters[sibling] < 0){
+				clusters[v] = clusters[sibling] = members.size();
+				members.add(new int[]{ sibling, v });
+			}
+			else
+				siblings.put(key, v);
+		}
+
+		for(int v = 0; v < this.size; v++){
+			if(clusters[v] < 0){
+				clusters[v] = members.size();
+				members.add(new int[]{ v });
+			}
+		}
+
+		int count = members.size();
+		int[][] up = new int[count][];
+		int[][] down = new int[count][];
+		int[] minRows = new int[count];
+		int[][] widths = new int[count][];
+		boolean[] merged = new boolean[count];
+		float[] x = new float[count];
+
+		for(int c = 0; c < count; c++){
+			int[] nodes = members.get(c);
+			int minRow = Integer.MAX_VALUE;
+			int maxRow = Integer.MIN_VALUE;
+			float sum = 0f;
+			int weight = 0;
+
+			for(int v : nodes){
+				minRow = Math.min(minRow, this.minRows[v]);
+				maxRow = Math.max(maxRow, this.minRows[v] + this.widths[v].length - 1);
+			}
+
+			int[] width = new int[maxRow - minRow + 1];
+			for(int v : nodes){
+				for(int r = 0; r < this.widths[v].length; r++){
+					width[this.minRows[v] - minRow + r] += this.widths[v][r];
+					sum += this.x[v] * this.widths[v][r];
+					weight += this.widths[v][r];
+				}
+			}
+
+			merged[c] = chains.get(c);
+			minRows[c] = minRow;
+			widths[c] = width;
+			x[c] = sum / weight;
+			up[c] = this.mapNeighbours(nodes, this.up, clusters, c);
+			down[c] = this.mapNeighbours(nodes, this.down, clusters, c);
+		}
+
+		return new LatticeCoarseGraph(this.rowCount, up, down, minRows, widths, members.toArray(new int[count][]), merged, x);
+	}
+
+	/**
+	 * Projects the positions of the current graph to the finer graph it has been created from.
+	 * Merged siblings are placed next to each other, merged chains keep the same position.
+	 *
+	 * @param finer is the graph the current graph has been created from.
+	 */
+	void project(LatticeCoarseGraph finer){
+		for(int c = 0; c < this.size; c++){
+			int[] nodes = this.children[c];
+
+			if(nodes.length == 1 || this.chains[c]){
+				for(int v : nodes)
+					finer.x[v] = this.x[c];
+			}
+			else{
+				int left = finer.x[nodes[0]] <= finer.x[nodes[1]] ? nodes[0] : nodes[1];
+				int right = left == nodes[0] ? nodes[1] : nodes[0];
+
+				finer.x[left] = this.x[c] - finer.getWidth(right) / 2f;
+				finer.x[right] = this.x[c] + finer.getWidth(left) / 2f;
+			}
+		}
+	}
+
+	/**
+	 * Moves each node towards the barycenter of its neighbours and separates the nodes of each row afterwards.
+	 *
+	 * @param sweeps is the count of moves per node.
+	 * @param minLength is the minimal distance between two elements of the same row.
+	 */
+	void relax(int sweeps, float minLength){
+		float[] moved = new float[this.size];
+
+		for(int s = 0; s < sweeps; s++){
+			for(int v = 0; v < this.size; v++){
+				int count = this.up[v].length + this.down[v].length;
+				float sum = 0f;
+
+				for(int u : this.up[v])
+					sum += this.x[u];
+
+				for(int u : this.down[v])
+					sum += this.x[u];
+
+				moved[v] = count == 0 ? this.x[v] : (this.x[v] + sum / count) / 2f;
+			}
+
+			System.arraycopy(moved, 0, this.x, 0, this.size);
+
+			this.separate(minLength);
+		}
+	}
+
+	/**
+	 * Separates the nodes of each row without changing their order and the mean position of the row.
+	 *
+	 * @param minLength is the minimal distance between two elements of the same row.
+	 */
+	void separate(float minLength){
+		for(int r = 0; r < this.rowCount; r++){
+			final int[] nodes = this.rowNodes[r];
+			int[] width = this.rowWidths[r];
+
+			if(nodes.length < 2)
+				continue;
+
+			Integer[] order = new Integer[nodes.length];
+			for(int i = 0; i < nodes.length; i++)
+				order[i] = i;
+
+			Arrays.sort(order, new Comparator<Integer>(){
+				public int compare(Integer i, Integer j){
+					return Float.compare(x[nodes[i]], x[nodes[j]]);
+				}
+			});
+
+			float[] positions = new float[nodes.length];
+			float shift = 0f;
+
+			positions[0] = this.x[nodes[order[0]]];
+			for(int i = 1; i < order.length; i++){
+				float gap = (width[order[i - 1]] + width[order[i]]) * minLength / 2f;
+				float position = this.x[nodes[order[i]]];
+
+				positions[i] = Math.max(position, positions[i - 1] + gap);
+				shift += positions[i] - position;
+			}
+
+			shift /= nodes.length;
+
+			for(int i = 0; i < order.length; i++)
+				this.x[nodes[order[i]]] = positions[i] - shift;
+		}
+	}
+
+	/**
+	 * Gets the greatest count of elements of a node in a single row.
+	 *
+	 * @param v is the node.
+	 * @return The width of the node.
+	 */
+	private int getWidth(int v){
+		int width = 0;
+
+		for(int w : this.widths[v])
+			width = Math.max(width, w);
+
+		return width;
+	}
+
+	/**
+	 * Maps the neighbours of merged nodes to the nodes of the coarser graph.
+	 *
+	 * @param nodes are the merged nodes.
+	 * @param neighbours contains the neighbours of each node of the current graph.
+	 * @param clusters contains the node of the coarser graph for each node of the current graph.
+	 * @param cluster is the node of the coarser graph which the merged nodes belong to.
+	 * @return The sorted neighbours in the coarser graph.
+	 */
+	private int[] mapNeighbours(int[] nodes, int[][] neighbours, int[] clusters, int cluster){
+		TreeSet<Integer> mapped = new TreeSet<Integer>();
+
+		for(int v : nodes){
+			for(int u : neighbours[v]){
+				if(clusters[u] != cluster)
+					mapped.add(clusters[u]);
+			}
+		}
+
+		int[] result = new int[mapped.size()];
+		int i = 0;
+
+		for(Integer u : mapped)
+			result[i++] = u;
+
+		return result;
+	}
+
+	/**
+	 * Creates the nodes of each row together with their count of elements in that row.
+	 */
+	private void createRows(){
+		int[] counts = new int[this.rowCount];
+
+		for(int v = 0; v < this.size; v++){
+			for(int r = 0; r < this.widths[v].length; r++){
+				if(this.widths[v][r] > 0)
+					counts[this.minRows[v] + r]++;
+			}
+		}
+
+		this.rowNodes = new int[this.rowCount][];
+		this.rowWidths = new int[this.rowCount][];
+
+		for(int r = 0; r < this.rowCount; r++){
+			this.rowNodes[r] = new int[counts[r]];
+			this.rowWidths[r] = new int[counts[r]];
+			counts[r] = 0;
+		}
+
+		for(int v = 0; v < this.size; v++){
+			for(int r = 0; r < this.widths[v].length; r++){
+				if(this.widths[v][r] > 0){
+					int row = this.minRows[v] + r;
+
+					this.rowNodes[row][counts[row]] = v;
+					this.rowWidths[row][counts[row]] = this.widths[v][r];
+					counts[row]++;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package unstable.hassediagram.latticedrawing.layouts;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This class represents a vertice between an element and one of its parents together with
+ * all levels located between them, which are the candidates for a collision with the vertice.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-09-15
+ */
+class LatticeCollisionEdge {
+	private LatticeElement element;
+	private LatticeElement parent;
+	private LatticeElementLevel parentLevel;
+	private LatticeElementLevelCollection range;
+
+	/**
+	 * Constructor
+	 *
+	 * @param element is the bottom element of the vertice.
+	 * @param parent is the top element of the vertice.
+	 * @param parentLevel is the level of the top element.
+	 * @param range is the collection of levels located between the bottom and the top element.
+	 */
+	LatticeCollisionEdge(LatticeElement element, LatticeElement parent, LatticeElementLevel parentLevel, LatticeElementLevelCollection range){
+		this.element = element;
+		this.parent = parent;
+		this.parentLevel = parentLevel;
+		this.range = range;
+	}
+
+	/**
+	 * Gets the bottom element of the vertice.
+	 *
+	 * @return The bottom element.
+	 */
+	LatticeElement getElement(){
+		return this.element;
+	}
+
+	/**
+	 * Gets the top element of the vertice.
+	 *
+	 * @return The top element.
+	 */
+	LatticeElement getParent(){
+		return this.parent;
+	}
+
+	/**
+	 * Gets the level of the top element.
+	 *
+	 * @return The level of the top element.
+	 */
+	LatticeElementLevel getParentLevel(){
+		return this.parentLevel;
+	}
+
+	/**
+	 * Gets the levels located between the bottom and the top element.
+	 *
+	 * @return The collection of levels.
+	 */
+	LatticeElementLevelCollection getRange(){
+		return this.range;
+	}
+}
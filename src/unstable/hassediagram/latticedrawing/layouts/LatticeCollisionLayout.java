@@ -0,0 +1,210 @@
+package unstable.hassediagram.latticedrawing.layouts;
+
+import java.util.concurrent.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+import unstable.hassediagram.latticedrawing.utils.*;
+
+/**
+ * This class represents the standard layout which beautifies the descriptor based positions
+ * by separating overlapping elements and removing collisions between elements and vertices.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-09-01
+ */
+public class LatticeCollisionLayout implements ILatticeLayout {
+	protected static final int iterations = 20;
+
+	/**
+	 * Arranges the lattice elements.
+	 * An interrupted thread stops the layout with a cancellation exception,
+	 * a reached deadline stops it with the positions calculated so far.
+	 *
+	 * @param lattice whose elements will be positioned.
+	 */
+	public void arrange(Lattice lattice){
+		//beautifies the the lattice visualization
+		for(int i = 0; i < iterations; i++){
+			//an interrupted worker stops the layout, for instance while the pool shuts down
+			if(Thread.currentThread().isInterrupted())
+				throw new CancellationException("The layout has been interrupted");
+
+			//keeps the positions calculated so far
+			if(lattice.isExpired())
+				break;
+
+			//sets different positions for elements with the same x coordinate
+			this.setPositions(lattice);
+
+			//every element has got its initial point
+			if(i == 0)
+				lattice.notifyLayoutListener(0);
+
+			//removes collisions
+			this.removeCollisions(lattice, i);
+
+			//sets different positions for elements with the same x coordinate
+			this.setPositions(lattice);
+
+			lattice.notifyLayoutListener(i + 1);
+		}
+	}
+
+	/**
+	 * Sets the position of each lattice element if two or more elements have the same position(are overlapping).
+	 * <pre>
+	 * {@code
+     * 				o                                o
+ 	 *             / \                             /   \
+	 *            /   \                           /     \
+	 *           o     o            ->           o       o
+	 *          / \   / \                      / |       | \
+	 *         /   \ /   \                    /  |       |  \
+	 *        o     oo    o                  o   o       o   o
+	 * }
+	 * </pre>
+	 *
+	 * @param lattice whose elements will be positioned.
+	 */
+	protected void setPositions(Lattice lattice){
+		LatticeElementLevelCollection levels = lattice.getLevels();
+
+		for(LatticeElementLevel level : levels)
+			this.setPositions(level);
+	}
+
+	/**
+	 * Sets the position of each lattice element of a single level if two or more elements are overlapping.
+	 *
+	 * @param level whose elements will be positioned.
+	 */
+	protected void setPositions(LatticeElementLevel level){
+		Float minLength = 1f;
+
+		for(int i = 0; i < level.size(); i++){
+			LatticeElement e1 = level.get(i);
+
+			for(int j = 0; j < level.size(); j++){
+				LatticeElement e2 = level.get(j);
+
+				LatticePoint e1Point = e1.getPoint();
+				LatticePoint e2Point = e2.getPoint();
+				Float length = Math.abs(e2Point.getX() - e1Point.getX());
+
+				if(length < minLength){
+					Float factor = (minLength - length) / 2;
+
+					e1Point.setX(e1Point.getX() - factor);
+					e2Point.setX(e2Point.getX() + factor);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes collisions if an element is located very closely to a vertice.
+	 * <pre>
+	 *  {@code
+	 *  		o         o
+ 	 *          |         | \
+	 *          |         |  \
+	 *          o   ->    |   o
+	 *          |         |  /
+	 *          |         | /
+	 *          o         o
+	 *  }
+	 * </pre>
+	 * @param lattice whose elements will be positioned.
+	 * @param index is a coefficient indicating how far should be moved a lattice element.
+	 */
+	protected void removeCollisions(Lattice lattice, Integer index){
+		LatticeElementLevelCollection levels = lattice.getLevels();
+		for(int i = 1; i < levels.size(); i++){
+			LatticeElementLevel level = levels.get(i);
+
+			if(lattice.isExpired())
+				return;
+
+			for(LatticeElement e : level){
+				for(LatticeElement p : e.getParentElements()){
+					LatticeElementLevel pLevel = levels.find(p);
+					LatticeElementLevelCollection range = this.createRange(levels, level, pLevel);
+
+					this.removeCollisions(levels, level, e, p, pLevel, range, index);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds all the levels located between two levels.
+	 *
+	 * @param levels is the collection of all levels of the lattice.
+	 * @param level is the bottom level.
+	 * @param pLevel is the top level.
+	 * @return A new lattice element level collection with the levels located between them.
+	 */
+	protected LatticeElementLevelCollection createRange(LatticeElementLevelCollection levels, LatticeElementLevel level, LatticeElementLevel pLevel){
+		//creates a delegate for looking for all the elements located between two levels
+		return levels.getRange(level, pLevel, new ILatticeElementLevelCriteria(){
+			public Boolean exists(LatticeElement bottom, LatticeElement top, LatticeElement elem){
+				if( elem.getPoint().getY() > bottom.getPoint().getY() && elem.getPoint().getY() < top.getPoint().getY())
+					return true;
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Removes collisions between the vertice described by two elements and all elements located between them.
+	 *
+	 * @param levels is the collection of all levels of the lattice.
+	 * @param level is the level of the bottom element.
+	 * @param e is the bottom element of the vertice.
+	 * @param p is the top element of the vertice.
+	 * @param pLevel is the level of the top element.
+	 * @param range is the collection of levels located between the bottom and the top element.
+	 * @param index is a coefficient indicating how far should be moved a lattice element.
+	 */
+	protected void removeCollisions(LatticeElementLevelCollection levels, LatticeElementLevel level,
+		LatticeElement e, LatticeElement p, LatticeElementLevel pLevel, LatticeElementLevelCollection range, Integer index){
+		Float dis = 0.3f;
+
+		for(LatticeElementLevel current : range){
+			if(current != pLevel && current != levels.get(0)){
+
+				for(LatticeElement c : current){
+					Float disC = Triangle.getDistance(p.getPoint().getX(), p.getPoint().getY(),
+							e.getPoint().getX(), e.getPoint().getY());
+
+					Float disA = Triangle.getDistance(p.getPoint().getX(), p.getPoint().getY(),
+							c.getPoint().getX(), c.getPoint().getY());
+
+					Float disB = Triangle.getDistance(c.getPoint().getX(), c.getPoint().getY(),
+							e.getPoint().getX(), e.getPoint().getY());
+
+					Float disH = Triangle.getCHeight(disA, disB, disC);
+
+					if(disH < dis){
+							Integer sign = c.getPoint().getX() > 0f ? +1 : -1;
+							Integer cParentSize = c.getParentElements().size();
+							Integer eParentSize = e.getParentElements().size();
+							Integer pParentSize = p.getParentElements().size();
+							Integer minParentSize = Math.min(Math.min(cParentSize, eParentSize), pParentSize);
+
+							if(level.size() == 1 && minParentSize == eParentSize)
+								e.getPoint().setX(e.getPoint().getX() + (4 * dis) * sign + index);
+							else if((current.size() == 1 && minParentSize == cParentSize))
+								c.getPoint().setX(e.getPoint().getX() + (4 * dis)* sign + index);
+							else if(minParentSize == pParentSize && pParentSize != 0)
+								p.getPoint().setX(p.getPoint().getX() + (4 * dis) * sign + index);
+							else if(minParentSize == pParentSize && pParentSize == 0)
+								e.getPoint().setX(e.getPoint().getX() + (4 * dis) * sign + index);
+							else
+								p.getPoint().setX(p.getPoint().getX() + (4 * dis) * sign + index);
+					}
+				}
+			}
+		}
+	}
+}
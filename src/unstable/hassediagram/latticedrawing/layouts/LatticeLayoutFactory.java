@@ -0,0 +1,35 @@
+package unstable.hassediagram.latticedrawing.layouts;
+
+/**
+ * This class is responsible for creating a new lattice layout.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-09-01
+ */
+public class LatticeLayoutFactory {
+	/**
+	 * The version of the layouts, which has to be increased whenever a layout positions the elements differently.
+	 */
+	public static final int version = 1;
+
+	/**
+	 * Creates a new lattice layout.
+	 *
+	 * @param layout specifies the layout type.
+	 * @return The specified layout.
+	 */
+	public static ILatticeLayout createLayout(LatticeLayoutType layout){
+		switch(layout){
+			case Additive:
+				return new LatticeAdditiveLayout();
+			case Multilevel:
+				return new LatticeMultilevelLayout();
+			case Parallel:
+				return new LatticeParallelLayout();
+			case Collision:
+				return new LatticeCollisionLayout();
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,29 @@
+package unstable.hassediagram.latticedrawing.layouts;
+
+/**
+ * This enumeration represents different layout types which can be used to arrange a lattice.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-09-01
+ */
+public enum LatticeLayoutType {
+	Collision,
+	Additive,
+	Multilevel,
+	Parallel;
+
+	/**
+	 * Finds the layout type by its name ignoring the case.
+	 *
+	 * @param value is the name of the layout type.
+	 * @return The matching layout type or the collision layout if no such type exists.
+	 */
+	public static LatticeLayoutType parse(String value){
+		for(LatticeLayoutType type : LatticeLayoutType.values()){
+			if(type.name().equalsIgnoreCase(value))
+				return type;
+		}
+
+		return Collision;
+	}
+}
@@ -0,0 +1,142 @@
+package unstable.hassediagram.latticedrawing.layouts;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This class represents a multilevel layout for large lattices.
+ * The hasse diagram is coarsened repeatedly by merging chains and siblings, the smallest graph is laid out
+ * and the positions are projected back and refined level by level by local moves only.
+ * <pre>
+ * {@code
+ * 		G0 = hasse diagram, Gi+1 = coarsen(Gi)     until Gk is small or stops shrinking
+ *
+ * 		relax(Gk)
+ *
+ * 		for i = k - 1 to 0: project(Gi+1, Gi), relax(Gi)
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-09-08
+ */
+public class LatticeMultilevelLayout implements ILatticeLayout {
+	private static final int minSize = 32;
+	private static final float minRatio = 0.9f;
+	private static final int coarseSweeps = 50;
+	private static final int refineSweeps = 4;
+	private static final float minLength = 1f;
+
+	/**
+	 * Arranges the lattice elements.
+	 *
+	 * @param lattice whose elements will be positioned.
+	 */
+	public void arrange(Lattice lattice){
+		LatticeElementStorage storage = lattice.getStorage();
+		LatticeElementLevelCollection levels = lattice.getLevels();
+		Vector<LatticeCoarseGraph> graphs = new Vector<LatticeCoarseGraph>();
+
+		graphs.add(this.createGraph(storage, levels));
+		lattice.notifyLayoutListener(0);
+
+		//coarsens the hasse diagram as long as it shrinks noticeably
+		while(true){
+			LatticeCoarseGraph graph = graphs.lastElement();
+
+			if(graph.size() <= minSize)
+				break;
+
+			LatticeCoarseGraph coarse = graph.coarsen();
+
+			if(coarse.size() > graph.size() * minRatio)
+				break;
+
+			graphs.add(coarse);
+		}
+
+		//lays out the smallest graph
+		if(!lattice.isExpired())
+			graphs.lastElement().relax(coarseSweeps, minLength);
+
+		//projects the positions back and refines them level by level
+		for(int i = graphs.size() - 2; i >= 0; i--){
+			//an interrupted worker stops the layout, for instance while the pool shuts down
+			if(Thread.currentThread().isInterrupted())
+				throw new CancellationException("The layout has been interrupted");
+
+			graphs.get(i + 1).project(graphs.get(i));
+
+			//a reached deadline only projects the positions calculated so far
+			if(!lattice.isExpired())
+				graphs.get(i).relax(refineSweeps, minLength);
+		}
+
+		float[] x = graphs.firstElement().getX();
+
+		for(int i = 0; i < storage.size(); i++)
+			storage.get(i).getPoint().setX(x[i]);
+
+		lattice.notifyLayoutListener(1);
+	}
+
+	/**
+	 * Creates the finest graph containing a node for each lattice element.
+	 *
+	 * @param storage contains all lattice elements.
+	 * @param levels is the collection of all levels describing the rows of the graph.
+	 * @return The finest graph.
+	 */
+	private LatticeCoarseGraph createGraph(LatticeElementStorage storage, LatticeElementLevelCollection levels){
+		int size = storage.size();
+		HashMap<LatticeElement, Integer> indices = new HashMap<LatticeElement, Integer>();
+
+		for(int i = 0; i < size; i++)
+			indices.put(storage.get(i), i);
+
+		int[][] up = new int[size][];
+		int[][] down = new int[size][];
+		int[] minRows = new int[size];
+		int[][] widths = new int[size][];
+		int[][] children = new int[size][];
+		float[] x = new float[size];
+
+		for(int r = 0; r < levels.size(); r++){
+			for(LatticeElement e : levels.get(r))
+				minRows[indices.get(e)] = r;
+		}
+
+		for(int i = 0; i < size; i++){
+			LatticeElement e = storage.get(i);
+
+			up[i] = this.getIndices(e.getParentElements(), indices);
+			down[i] = this.getIndices(e.getElements(), indices);
+			widths[i] = new int[]{ 1 };
+			children[i] = new int[]{ i };
+			//starts with the positions given by the descriptors
+			x[i] = e.getPoint().getX();
+		}
+
+		return new LatticeCoarseGraph(levels.size(), up, down, minRows, widths, children, new boolean[size], x);
+	}
+
+	/**
+	 * Gets the sorted storage positions of the lattice elements.
+	 *
+	 * @param elements is the collection of lattice elements.
+	 * @param indices contains the position of each element in the storage.
+	 * @return The sorted positions.
+	 */
+	private int[] getIndices(LatticeElementCollection elements, HashMap<LatticeElement, Integer> indices){
+		int[] result = new int[elements.size()];
+
+		for(int i = 0; i < elements.size(); i++)
+			result[i] = indices.get(elements.get(i));
+
+		Arrays.sort(result);
+
+		return result;
+	}
+}
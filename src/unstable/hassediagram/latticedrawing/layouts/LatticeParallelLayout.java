@@ -0,0 +1,209 @@
+package unstable.hassediagram.latticedrawing.layouts;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This class represents the standard layout running its independent work on a fork-join pool.
+ * The result is identical to the sequential layout:
+ * <pre>
+ * {@code
+ * 	setPositions      - each level only moves its own elements, so all levels are processed in parallel
+ * 	                    as soon as every element has got its descriptor point.
+ *
+ * 	removeCollisions  - the level of each parent and the levels located between a vertice only depend on
+ * 	                    the y coordinates, which never change, so they are collected once in parallel.
+ * 	                    The moves themselves depend on each other and keep the sequential order.
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-09-15
+ */
+public class LatticeParallelLayout extends LatticeCollisionLayout {
+	private static final int minSize = 64;
+	private ForkJoinPool pool;
+
+	/**
+	 * Constructor
+	 */
+	public LatticeParallelLayout(){
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param pool is the fork-join pool executing the independent work.
+	 */
+	public LatticeParallelLayout(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	/**
+	 * Arranges the lattice elements.
+	 *
+	 * @param lattice whose elements will be positioned.
+	 */
+	public void arrange(Lattice lattice){
+		LatticeElementLevelCollection levels = lattice.getLevels();
+		LatticeCollisionEdge[][] edges = null;
+
+		//small lattices are not worth the scheduling
+		if(lattice.getStorage().size() < minSize){
+			super.arrange(lattice);
+			return;
+		}
+
+		for(int i = 0; i < iterations; i++){
+			//an interrupted worker stops the layout, for instance while the pool shuts down
+			if(Thread.currentThread().isInterrupted())
+				throw new CancellationException("The layout has been interrupted");
+
+			//keeps the positions calculated so far
+			if(lattice.isExpired())
+				break;
+
+			//sets different positions for elements with the same x coordinate
+			this.setPositions(lattice);
+
+			//every element has got its initial point
+			if(i == 0)
+				lattice.notifyLayoutListener(0);
+
+			//every element has got its point after the first pass
+			if(edges == null)
+				edges = this.createEdges(levels);
+
+			//removes collisions
+			this.removeCollisions(lattice, levels, edges, i);
+
+			//sets different positions for elements with the same x coordinate
+			this.setPositions(lattice);
+
+			lattice.notifyLayoutListener(i + 1);
+		}
+	}
+
+	/**
+	 * Sets the position of each lattice element if two or more elements have the same position.
+	 * The levels are processed in parallel once all points exist, because a missing point is created
+	 * by a descriptor from the current positions of the parent levels.
+	 *
+	 * @param lattice whose elements will be positioned.
+	 */
+	protected void setPositions(Lattice lattice){
+		LatticeElementLevelCollection levels = lattice.getLevels();
+
+		if(!this.hasPoints(lattice)){
+			super.setPositions(lattice);
+			return;
+		}
+
+		final Vector<RecursiveAction> tasks = new Vector<RecursiveAction>();
+
+		for(final LatticeElementLevel level : levels){
+			tasks.add(new RecursiveAction(){
+				private static final long serialVersionUID = 1L;
+
+				protected void compute(){
+					setPositions(level);
+				}
+			});
+		}
+
+		this.invokeAll(tasks);
+	}
+
+	/**
+	 * Removes collisions between the vertices and the elements located between them in the sequential order.
+	 *
+	 * @param lattice whose deadline is checked after each level.
+	 * @param levels is the collection of all levels of the lattice.
+	 * @param edges contains the vertices of each level.
+	 * @param index is a coefficient indicating how far should be moved a lattice element.
+	 */
+	private void removeCollisions(Lattice lattice, LatticeElementLevelCollection levels, LatticeCollisionEdge[][] edges, Integer index){
+		for(int i = 1; i < levels.size(); i++){
+			LatticeElementLevel level = levels.get(i);
+
+			if(lattice.isExpired())
+				return;
+
+			for(LatticeCollisionEdge edge : edges[i])
+				this.removeCollisions(levels, level, edge.getElement(), edge.getParent(), edge.getParentLevel(), edge.getRange(), index);
+		}
+	}
+
+	/**
+	 * Collects the vertices of each level together with the levels located between their elements.
+	 *
+	 * @param levels is the collection of all levels of the lattice.
+	 * @return The vertices of each level in the order used by the sequential layout.
+	 */
+	private LatticeCollisionEdge[][] createEdges(final LatticeElementLevelCollection levels){
+		final LatticeCollisionEdge[][] edges = new LatticeCollisionEdge[levels.size()][];
+		final Vector<RecursiveAction> tasks = new Vector<RecursiveAction>();
+
+		edges[0] = new LatticeCollisionEdge[0];
+
+		for(int i = 1; i < levels.size(); i++){
+			final int index = i;
+
+			tasks.add(new RecursiveAction(){
+				private static final long serialVersionUID = 1L;
+
+				protected void compute(){
+					LatticeElementLevel level = levels.get(index);
+					Vector<LatticeCollisionEdge> result = new Vector<LatticeCollisionEdge>();
+
+					for(LatticeElement e : level){
+						for(LatticeElement p : e.getParentElements()){
+							LatticeElementLevel pLevel = levels.find(p);
+
+							result.add(new LatticeCollisionEdge(e, p, pLevel, createRange(levels, level, pLevel)));
+						}
+					}
+
+					edges[index] = result.toArray(new LatticeCollisionEdge[result.size()]);
+				}
+			});
+		}
+
+		this.invokeAll(tasks);
+
+		return edges;
+	}
+
+	/**
+	 * Executes the tasks on the fork-join pool and waits for all of them.
+	 *
+	 * @param tasks to execute.
+	 */
+	private void invokeAll(final Vector<RecursiveAction> tasks){
+		this.pool.invoke(new RecursiveAction(){
+			private static final long serialVersionUID = 1L;
+
+			protected void compute(){
+				ForkJoinTask.invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Returns true if every lattice element has got its point.
+	 *
+	 * @param lattice whose elements will be checked.
+	 * @return True whether all points exist.
+	 */
+	private Boolean hasPoints(Lattice lattice){
+		for(LatticeElement e : lattice.getStorage()){
+			if(!e.hasPoint())
+				return false;
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,327 @@
+package unstable.hassediagram.latticedrawing.storage;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.regex.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+import unstable.hassediagram.latticedrawing.utils.*;
+
+/**
+ * This class represents an archive containing all lattices of a dimension as packed bits.
+ * Each lattice is stored in a record of the same size at the position of its number,
+ * so a lattice is found without any index. Numbers without a lattice have got an empty record.
+ * <pre>
+ * {@code
+ * 	offset                 type        content
+ * 	0                      char[4]     "LATA"
+ * 	4                      uint16      version
+ * 	6                      uint16      dimension n
+ * 	8                      uint32      count of records
+ * 	12                     uint32      size of a record s
+ * 	16 + k * s             uint8       flags of the lattice k: 1 = present, 2 = marked
+ * 	17 + k * s             bits[n*n]   relation <=, row by row, the lowest bit first
+ * 	17 + k * s + (n*n+7)/8 bits[n]     markings
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-11-17
+ */
+public class LatticeArchive {
+	public static final short version = 1;
+	public static final String extension = ".lattices";
+	private static final byte[] magic = { 'L', 'A', 'T', 'A' };
+	private static final int headerSize = 16;
+	private static final int present = 1;
+	private static final int marked = 2;
+
+	private File file;
+	private FileChannel channel;
+	private Integer dimension;
+	private Integer count;
+	private Integer recordSize;
+
+	/**
+	 * Constructor
+	 *
+	 * @param file is the archive file.
+	 * @throws IOException if the file cannot be read or is not an archive.
+	 */
+	public LatticeArchive(File file) throws IOException {
+		this.file = file;
+		this.channel = new RandomAccessFile(file, "r").getChannel();
+
+		ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+		this.read(header, 0);
+
+		byte[] signature = new byte[magic.length];
+		header.get(signature);
+
+		if(!Arrays.equals(signature, magic) || header.getShort() != version){
+			this.close();
+			throw new IOException(file + " is not a lattice archive");
+		}
+
+		this.dimension = (int)header.getShort();
+		this.count = header.getInt();
+		this.recordSize = header.getInt();
+	}
+
+	/**
+	 * Gets the archive file.
+	 *
+	 * @return The file containing the lattices.
+	 */
+	public File getFile(){
+		return this.file;
+	}
+
+	/**
+	 * Gets the dimension of the lattices.
+	 *
+	 * @return The count of elements of each lattice.
+	 */
+	public Integer getDimension(){
+		return this.dimension;
+	}
+
+	/**
+	 * Gets the count of records, which is the largest number plus one.
+	 *
+	 * @return The count of records.
+	 */
+	public Integer getCount(){
+		return this.count;
+	}
+
+	/**
+	 * Returns true if the archive contains a lattice.
+	 *
+	 * @param number is the number of the lattice.
+	 * @return True whether the lattice exists.
+	 * @throws IOException if the archive cannot be read.
+	 */
+	public Boolean contains(Integer number) throws IOException {
+		return this.readRecord(number) != null;
+	}
+
+	/**
+	 * Loads a lattice directly from its matrices.
+	 *
+	 * @param number is the number of the lattice.
+	 * @return A new lattice object or null if the archive does not contain the lattice.
+	 * @throws IOException if the archive cannot be read.
+	 */
+	public Lattice load(Integer number) throws IOException {
+		LatticeParser parser = this.getParser(number);
+
+		return parser != null ? Lattice.load(parser.parse()) : null;
+	}
+
+	/**
+	 * Gets a parser of the matrices of a lattice, so the lattice can be built later.
+	 *
+	 * @param number is the number of the lattice.
+	 * @return A new parser or null if the archive does not contain the lattice.
+	 * @throws IOException if the archive cannot be read.
+	 */
+	public LatticeParser getParser(Integer number) throws IOException {
+		ByteBuffer record = this.readRecord(number);
+
+		if(record == null)
+			return null;
+
+		int n = this.dimension;
+		int flags = record.get(0);
+		String matrix = decode(record, 1, n * n);
+		String markings = (flags & marked) != 0 ? decode(record, 1 + (n * n + 7) / 8, n) : "";
+
+		return new LatticeParser(new RelationMatrix(matrix, n, n), new RelationMatrix(markings, 1, n));
+	}
+
+	/**
+	 * Closes the archive file.
+	 *
+	 * @throws IOException if the file cannot be closed.
+	 */
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Reads the record of a lattice. The positional read allows concurrent readers.
+	 *
+	 * @param number is the number of the lattice.
+	 * @return The record or null if the archive does not contain the lattice.
+	 * @throws IOException if the archive cannot be read.
+	 */
+	private ByteBuffer readRecord(Integer number) throws IOException {
+		if(number < 0 || number >= this.count)
+			return null;
+
+		ByteBuffer record = ByteBuffer.allocate(this.recordSize);
+		this.read(record, headerSize + (long)number * this.recordSize);
+
+		return (record.get(0) & present) != 0 ? record : null;
+	}
+
+	/**
+	 * Fills a buffer from a position of the archive.
+	 *
+	 * @param buffer which will be filled.
+	 * @param position in the archive file.
+	 * @throws IOException if the archive ends before the buffer is filled.
+	 */
+	private void read(ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()){
+			int count = this.channel.read(buffer, position);
+
+			if(count < 0)
+				throw new EOFException("The lattice archive is truncated");
+
+			position += count;
+		}
+
+		buffer.flip();
+	}
+
+	/**
+	 * Creates an archive from the text files of a dimension named like dim6/dim6_3.
+	 *
+	 * @param directory contains the text files of the dimension.
+	 * @param dimension is the dimension of the lattices.
+	 * @param file is the archive file which will be written.
+	 * @return The count of converted lattices.
+	 * @throws IOException if a file cannot be read or written.
+	 */
+	public static Integer convert(File directory, Integer dimension, File file) throws IOException {
+		Pattern pattern = Pattern.compile("dim" + dimension + "_([0-9]+)");
+		TreeMap<Integer, File> files = new TreeMap<Integer, File>();
+		String[] names = directory.list();
+
+		if(names == null)
+			throw new FileNotFoundException(directory.toString());
+
+		for(String name : names){
+			Matcher matcher = pattern.matcher(name);
+
+			if(matcher.matches())
+				files.put(Integer.parseInt(matcher.group(1)), new File(directory, name));
+		}
+
+		int n = dimension;
+		int recordSize = 1 + (n * n + 7) / 8 + (n + 7) / 8;
+		int count = files.isEmpty() ? 0 : files.lastKey() + 1;
+		ByteBuffer buffer = ByteBuffer.allocate(headerSize + count * recordSize).order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.put(magic);
+		buffer.putShort(version);
+		buffer.putShort((short)n);
+		buffer.putInt(count);
+		buffer.putInt(recordSize);
+
+		for(Map.Entry<Integer, File> entry : files.entrySet()){
+			LatticeParser parser = new LatticeParser(readText(entry.getValue()));
+			RelationMatrix matrix = parser.getMatrix();
+			RelationMatrix markingMatrix = parser.getMarkingMatrix();
+			int offset = headerSize + entry.getKey() * recordSize;
+
+			if(matrix.getRowDimension() != n || matrix.getMatrixDef().length() != n * n)
+				throw new IOException(entry.getValue() + " does not contain a lattice of the dimension " + n);
+
+			buffer.put(offset, (byte)(present | (markingMatrix.isEmpty() ? 0 : marked)));
+			encode(buffer, offset + 1, matrix.getMatrixDef());
+
+			if(!markingMatrix.isEmpty())
+				encode(buffer, offset + 1 + (n * n + 7) / 8, markingMatrix.getMatrixDef());
+		}
+
+		OutputStream stream = new FileOutputStream(file);
+
+		try {
+			stream.write(buffer.array());
+		} finally {
+			stream.close();
+		}
+
+		return files.size();
+	}
+
+	/**
+	 * Converts the text files of the resources to archives, one archive for each dimension.
+	 * <pre>
+	 * {@code
+	 * 	LatticeArchive Content/Resources 2 12
+	 * }
+	 * </pre>
+	 *
+	 * @param args are the resource directory, the first and the last dimension.
+	 * @throws IOException if a file cannot be read or written.
+	 */
+	public static void main(String[] args) throws IOException {
+		File resources = new File(args[0]);
+		int from = Integer.parseInt(args[1]);
+		int to = Integer.parseInt(args[2]);
+
+		for(int dimension = from; dimension <= to; dimension++){
+			File file = new File(resources, "dim" + dimension + extension);
+			Integer count = convert(new File(resources, "dim" + dimension), dimension, file);
+
+			System.out.println(file + ": " + count + " lattices, " + file.length() + " bytes");
+		}
+	}
+
+	/**
+	 * Packs a string of 0 and 1 as bits, the lowest bit first.
+	 *
+	 * @param buffer receiving the bits.
+	 * @param offset is the position of the first byte.
+	 * @param bits is the string of 0 and 1.
+	 */
+	private static void encode(ByteBuffer buffer, int offset, String bits){
+		for(int i = 0; i < bits.length(); i++){
+			if(bits.charAt(i) == '1')
+				buffer.put(offset + (i >> 3), (byte)(buffer.get(offset + (i >> 3)) | (1 << (i & 7))));
+		}
+	}
+
+	/**
+	 * Unpacks bits to a string of 0 and 1.
+	 *
+	 * @param buffer containing the bits.
+	 * @param offset is the position of the first byte.
+	 * @param count is the count of bits.
+	 * @return The string of 0 and 1.
+	 */
+	private static String decode(ByteBuffer buffer, int offset, int count){
+		char[] bits = new char[count];
+
+		for(int i = 0; i < count; i++)
+			bits[i] = (buffer.get(offset + (i >> 3)) & (1 << (i & 7))) != 0 ? '1' : '0';
+
+		return new String(bits);
+	}
+
+	/**
+	 * Reads a text file.
+	 *
+	 * @param file is the text file.
+	 * @return The content of the file.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private static String readText(File file) throws IOException {
+		byte[] buffer = new byte[(int)file.length()];
+		DataInputStream stream = new DataInputStream(new FileInputStream(file));
+
+		try {
+			stream.readFully(buffer);
+		} finally {
+			stream.close();
+		}
+
+		return new String(buffer);
+	}
+}
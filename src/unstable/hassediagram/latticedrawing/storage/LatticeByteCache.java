@@ -0,0 +1,140 @@
+package unstable.hassediagram.latticedrawing.storage;
+
+import java.util.*;
+
+/**
+ * This class represents an in-process cache of encoded lattice representations.
+ * The cache is bounded by the total count of cached bytes and evicts the least recently used entries first.
+ * All methods are synchronized, so the cache can be shared by concurrent requests.
+ * The cache counts its hits, misses and evictions for monitoring.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-10-13
+ */
+public class LatticeByteCache {
+	private long capacity;
+	private long size;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private LinkedHashMap<String, byte[]> entries;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity is the maximal count of cached bytes.
+	 */
+	public LatticeByteCache(long capacity){
+		this.capacity = capacity;
+		//orders the entries by their last access
+		this.entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	}
+
+	/**
+	 * Gets the maximal count of cached bytes.
+	 *
+	 * @return The capacity of the cache.
+	 */
+	public long getCapacity(){
+		return this.capacity;
+	}
+
+	/**
+	 * Gets the current count of cached bytes.
+	 *
+	 * @return The size of the cache.
+	 */
+	public synchronized long getSize(){
+		return this.size;
+	}
+
+	/**
+	 * Gets the count of cached entries.
+	 *
+	 * @return The count of entries.
+	 */
+	public synchronized int getCount(){
+		return this.entries.size();
+	}
+
+	/**
+	 * Gets the count of lookups which have found an entry.
+	 *
+	 * @return The count of hits.
+	 */
+	public synchronized long getHits(){
+		return this.hits;
+	}
+
+	/**
+	 * Gets the count of lookups which have found no entry.
+	 *
+	 * @return The count of misses.
+	 */
+	public synchronized long getMisses(){
+		return this.misses;
+	}
+
+	/**
+	 * Gets the count of entries removed to keep the cache within its capacity.
+	 *
+	 * @return The count of evictions.
+	 */
+	public synchronized long getEvictions(){
+		return this.evictions;
+	}
+
+	/**
+	 * Finds a cached entry.
+	 *
+	 * @param key of the entry.
+	 * @return The cached bytes or null if no such entry exists.
+	 */
+	public synchronized byte[] get(String key){
+		byte[] value = this.entries.get(key);
+
+		if(value != null)
+			this.hits++;
+		else
+			this.misses++;
+
+		return value;
+	}
+
+	/**
+	 * Finds a cached entry without counting the lookup.
+	 *
+	 * @param key of the entry.
+	 * @return The cached bytes or null if no such entry exists.
+	 */
+	public synchronized byte[] peek(String key){
+		return this.entries.get(key);
+	}
+
+	/**
+	 * Adds an entry and evicts the least recently used entries until the cache fits into its capacity.
+	 * An entry larger than the whole capacity is not cached.
+	 *
+	 * @param key of the entry.
+	 * @param value is the encoded representation.
+	 */
+	public synchronized void put(String key, byte[] value){
+		if(value.length > this.capacity)
+			return;
+
+		byte[] old = this.entries.put(key, value);
+
+		if(old != null)
+			this.size -= old.length;
+
+		this.size += value.length;
+
+		Iterator<byte[]> iterator = this.entries.values().iterator();
+
+		while(this.size > this.capacity){
+			this.size -= iterator.next().length;
+			iterator.remove();
+			this.evictions++;
+		}
+	}
+}
@@ -0,0 +1,466 @@
+package unstable.hassediagram.latticedrawing.storage;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+import unstable.hassediagram.latticedrawing.layouts.*;
+
+/**
+ * This class represents a persistent store of lattice layouts in a single memory-mapped file.
+ * The store survives restarts, so a redeployed servlet does not compute the layouts again.
+ * A layout is found by the canonical hash of the lattice and the layout engine through an open-addressing index,
+ * so isomorphic lattices share a single layout which is mapped to each of them by its canonical labelling.
+ * The records are only appended and read without copying them from the mapped file.
+ * The first process opening the file becomes the writer, all other processes on the same host read it.
+ * <pre>
+ * {@code
+ * 	offset                 type        content
+ * 	0                      char[4]     "LATM"
+ * 	4                      uint16      version
+ * 	6                      uint16      reserved
+ * 	8                      uint32      count of slots s, a power of two
+ * 	12                     uint32      count of records
+ * 	16                     int64       size of the file
+ * 	24                     int64       end of the data region
+ * 	64 + 16k               int64       key of the slot k, 0 for an empty slot
+ * 	72 + 16k               int64       position of the record
+ * 	64 + 16s               ...         records: uint32 length followed by the layout
+ * }
+ * </pre>
+ * A layout lists the elements in their canonical order. The covers identify the lattice up to isomorphism,
+ * so a hash collision is detected and never applies a wrong layout.
+ * <pre>
+ * {@code
+ * 	0                      uint32      count of elements n
+ * 	4                      uint32      count of covers m
+ * 	8                      float32[n]  x coordinates
+ * 	8 + 4n                 float32[n]  y coordinates
+ * 	8 + 8n                 uint32[n+1] offsets of the lower covers of each element
+ * 	12 + 12n               uint16[m]   canonical positions of the lower covers
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-12-08
+ */
+public class LatticeLayoutStore {
+	public static final short version = 2;
+	public static final long defaultSize = 64L * 1024 * 1024;
+	public static final int defaultSlots = 1 << 16;
+	private static final byte[] magic = { 'L', 'A', 'T', 'M' };
+	private static final int headerSize = 64;
+	private static final int slotSize = 16;
+	private static final int countPosition = 12;
+	private static final int endPosition = 24;
+
+	private File file;
+	private FileChannel channel;
+	private FileLock lock;
+	private MappedByteBuffer buffer;
+	private Integer slots;
+	private Boolean readOnly;
+
+	/**
+	 * Constructor
+	 *
+	 * @param file is the store file, which is created if it does not exist.
+	 * @param size is the size of a new store file.
+	 * @param slots is the count of slots of a new store file, rounded up to a power of two.
+	 * @throws IOException if the file cannot be opened or is not a layout store.
+	 */
+	public LatticeLayoutStore(File file, long size, Integer slots) throws IOException {
+		this.file = file;
+
+		File parent = file.getAbsoluteFile().getParentFile();
+
+		if(!parent.isDirectory())
+			parent.mkdirs();
+
+		RandomAccessFile access;
+
+		try {
+			access = new RandomAccessFile(file, "rw");
+		} catch (FileNotFoundException e) {
+			//a file of another user can still be read
+			access = new RandomAccessFile(file, "r");
+		}
+
+		this.channel = access.getChannel();
+
+		try {
+			this.lock = this.tryLock();
+			this.readOnly = this.lock == null;
+
+			//the writer replaces an empty file or a file of a previous version
+			if(!this.readOnly && !this.isValid()){
+				access.setLength(0);
+				this.create(access, Math.min(size, Integer.MAX_VALUE), slots);
+			}
+
+			if(this.channel.size() < headerSize)
+				throw new IOException(file + " is not a layout store");
+
+			this.buffer = this.channel.map(this.readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, this.channel.size());
+			this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			byte[] signature = new byte[magic.length];
+			for(int i = 0; i < signature.length; i++)
+				signature[i] = this.buffer.get(i);
+
+			if(!Arrays.equals(signature, magic) || this.buffer.getShort(4) != version || this.buffer.getLong(16) != this.channel.size())
+				throw new IOException(file + " is not a layout store");
+
+			this.slots = this.buffer.getInt(8);
+		} catch (IOException e) {
+			this.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the store file.
+	 *
+	 * @return The file containing the layouts.
+	 */
+	public File getFile(){
+		return this.file;
+	}
+
+	/**
+	 * Returns true if another process writes the store, so this store can only be read.
+	 *
+	 * @return True whether the layouts cannot be added.
+	 */
+	public Boolean isReadOnly(){
+		return this.readOnly;
+	}
+
+	/**
+	 * Gets the count of stored layouts.
+	 *
+	 * @return The count of records.
+	 */
+	public Integer getCount(){
+		return this.buffer.getInt(countPosition);
+	}
+
+	/**
+	 * Finds the layout of a lattice or of a lattice isomorphic to it without copying the layout.
+	 * The index is read under the lock of the writer, so a record appended by another thread is complete.
+	 * A record appended by another process is checked against the bounds of the data region before it is read.
+	 *
+	 * @param form is the canonical form of the lattice.
+	 * @param layout is the layout which has arranged the lattice.
+	 * @return A read-only view of the stored layout or null if the layout is not stored.
+	 */
+	public ByteBuffer get(LatticeCanonicalForm form, LatticeLayoutType layout){
+		long key = createKey(form, layout);
+		long position;
+		int length;
+
+		synchronized(this){
+			int slot = this.find(key);
+
+			if(slot < 0 || this.buffer.getLong(this.getSlotPosition(slot)) != key)
+				return null;
+
+			position = this.buffer.getLong(this.getSlotPosition(slot) + 8);
+
+			if(position < this.getSlotPosition(this.slots) || position + 4 > this.buffer.capacity())
+				return null;
+
+			length = this.buffer.getInt((int)position);
+		}
+
+		if(length < 12 || position + 4 + length > this.buffer.capacity())
+			return null;
+
+		ByteBuffer record = this.buffer.duplicate();
+
+		record.position((int)position + 4);
+		record.limit((int)position + 4 + length);
+
+		ByteBuffer result = record.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+
+		return isIsomorphic(result, form) ? result : null;
+	}
+
+	/**
+	 * Appends the layout of an adjusted lattice. A stored layout is never replaced.
+	 *
+	 * @param form is the canonical form of the adjusted lattice.
+	 * @param layout is the layout which has arranged the lattice.
+	 * @return True if the layout has been stored, false if the store is read-only or full.
+	 */
+	public synchronized Boolean put(LatticeCanonicalForm form, LatticeLayoutType layout){
+		if(this.readOnly)
+			return false;
+
+		long key = createKey(form, layout);
+		int slot = this.find(key);
+
+		//the index is kept at most three quarters full, so a lookup finds an empty slot soon
+		if(slot < 0 || this.buffer.getLong(this.getSlotPosition(slot)) == key || 4L * (this.getCount() + 1) > 3L * this.slots)
+			return false;
+
+		ByteBuffer record = encode(form);
+		long end = this.buffer.getLong(endPosition);
+
+		if(end + 4 + record.capacity() > this.buffer.capacity())
+			return false;
+
+		//the record is written before the slot and the slot before the key, so a reader never finds a partial record
+		ByteBuffer target = this.buffer.duplicate();
+
+		target.position((int)end + 4);
+		target.put(record);
+		this.buffer.putInt((int)end, record.capacity());
+
+		this.buffer.putLong(this.getSlotPosition(slot) + 8, end);
+		this.buffer.putLong(this.getSlotPosition(slot), key);
+		this.buffer.putLong(endPosition, (end + 4 + record.capacity() + 7) & ~7L);
+		this.buffer.putInt(countPosition, this.getCount() + 1);
+
+		return true;
+	}
+
+	/**
+	 * Writes the mapped pages to the disk.
+	 */
+	public void flush(){
+		if(this.buffer != null && !this.readOnly)
+			this.buffer.force();
+	}
+
+	/**
+	 * Releases the store file. The mapping itself is released by the garbage collector.
+	 *
+	 * @throws IOException if the file cannot be closed.
+	 */
+	public void close() throws IOException {
+		this.flush();
+
+		if(this.lock != null)
+			this.lock.release();
+
+		this.channel.close();
+	}
+
+	/**
+	 * Finds the slot of a key by linear probing.
+	 *
+	 * @param key is the key of the layout.
+	 * @return The slot containing the key or the empty slot where the key belongs, -1 if the index is full.
+	 */
+	private int find(long key){
+		int mask = this.slots - 1;
+		int slot = (int)(mix(key) & mask);
+
+		for(int i = 0; i < this.slots; i++){
+			long current = this.buffer.getLong(this.getSlotPosition(slot));
+
+			if(current == key || current == 0)
+				return slot;
+
+			slot = (slot + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns true if the file has got a header of the current version.
+	 *
+	 * @return True whether the file is a layout store.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private Boolean isValid() throws IOException {
+		if(this.channel.size() < headerSize)
+			return false;
+
+		ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+		this.channel.read(header, 0);
+
+		byte[] signature = new byte[magic.length];
+		header.rewind();
+		header.get(signature);
+
+		return Arrays.equals(signature, magic) && header.getShort(4) == version && header.getLong(16) == this.channel.size();
+	}
+
+	/**
+	 * Gets the position of a slot in the file.
+	 *
+	 * @param slot is the number of the slot.
+	 * @return The position of the slot.
+	 */
+	private int getSlotPosition(int slot){
+		return headerSize + slot * slotSize;
+	}
+
+	/**
+	 * Locks the store file for writing.
+	 *
+	 * @return The lock or null if another process or another store of this process writes the file.
+	 * @throws IOException if the file cannot be locked.
+	 */
+	private FileLock tryLock() throws IOException {
+		try {
+			return this.channel.tryLock();
+		} catch (NonWritableChannelException e) {
+			return null;
+		} catch (OverlappingFileLockException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates an empty store file. The file is sparse, so the unused data region does not occupy the disk.
+	 *
+	 * @param access is the opened store file.
+	 * @param size is the size of the file.
+	 * @param slots is the count of slots.
+	 * @throws IOException if the file cannot be written.
+	 */
+	private void create(RandomAccessFile access, long size, int slots) throws IOException {
+		slots = Integer.highestOneBit(Math.max(16, slots - 1) << 1);
+
+		long dataPosition = headerSize + (long)slots * slotSize;
+
+		if(dataPosition >= size)
+			throw new IOException("The layout store of " + size + " bytes cannot contain " + slots + " slots");
+
+		ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+
+		header.put(magic);
+		header.putShort(version);
+		header.putShort((short)0);
+		header.putInt(slots);
+		header.putInt(0);
+		header.putLong(size);
+		header.putLong(dataPosition);
+		header.rewind();
+
+		access.setLength(size);
+		this.channel.write(header, 0);
+	}
+
+	/**
+	 * Creates the key of a layout. The version of the layout engines is part of the key,
+	 * so a new engine does not find the layouts of the previous one.
+	 *
+	 * @param form is the canonical form of the lattice.
+	 * @param layout is the layout which has arranged the lattice.
+	 * @return A key which is never 0.
+	 */
+	private static long createKey(LatticeCanonicalForm form, LatticeLayoutType layout){
+		return mix(form.getHash() ^ mix((long)layout.ordinal() << 16 | LatticeLayoutFactory.version)) | 1L << 63;
+	}
+
+	/**
+	 * Spreads the bits of a key, so similar keys get different slots.
+	 *
+	 * @param key is the key of a layout.
+	 * @return The hash code of the key.
+	 */
+	private static long mix(long key){
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+
+		return key;
+	}
+
+	/**
+	 * Encodes the layout of an adjusted lattice in its canonical order.
+	 *
+	 * @param form is the canonical form of the adjusted lattice.
+	 * @return A buffer containing the layout.
+	 */
+	public static ByteBuffer encode(LatticeCanonicalForm form){
+		LatticeElement[] elements = form.getElements();
+		int[][] covers = form.getCovers();
+		int size = elements.length;
+		int count = 0;
+
+		for(int[] c : covers)
+			count += c.length;
+
+		ByteBuffer buffer = ByteBuffer.allocate(12 + 12 * size + 2 * count).order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.putInt(size);
+		buffer.putInt(count);
+
+		for(LatticeElement e : elements)
+			buffer.putFloat(e.getPoint().getX());
+
+		for(LatticeElement e : elements)
+			buffer.putFloat(e.getPoint().getY());
+
+		int offset = 0;
+		buffer.putInt(offset);
+		for(int[] c : covers){
+			offset += c.length;
+			buffer.putInt(offset);
+		}
+
+		for(int[] c : covers){
+			for(int position : c)
+				buffer.putShort((short)position);
+		}
+
+		buffer.rewind();
+
+		return buffer;
+	}
+
+	/**
+	 * Gets the x coordinates of a stored layout.
+	 *
+	 * @param record is the stored layout.
+	 * @return The x coordinate of each canonical position.
+	 */
+	public static float[] decodePositions(ByteBuffer record){
+		float[] positions = new float[record.getInt(0)];
+
+		for(int i = 0; i < positions.length; i++)
+			positions[i] = record.getFloat(8 + 4 * i);
+
+		return positions;
+	}
+
+	/**
+	 * Returns true if a stored layout belongs to a lattice isomorphic to the given one.
+	 *
+	 * @param record is the stored layout.
+	 * @param form is the canonical form of the lattice.
+	 * @return True whether the canonical covers are equal.
+	 */
+	private static Boolean isIsomorphic(ByteBuffer record, LatticeCanonicalForm form){
+		int[][] covers = form.getCovers();
+		int size = covers.length;
+		int count = record.getInt(4);
+
+		//a record of another size never reads beyond its end
+		if(record.getInt(0) != size || count < 0 || record.capacity() != 12 + 12 * size + 2 * count)
+			return false;
+
+		int coverPosition = 12 + 12 * size;
+		for(int i = 0; i < size; i++){
+			int from = record.getInt(8 + 8 * size + 4 * i);
+
+			if(from < 0 || from + covers[i].length > count || record.getInt(8 + 8 * size + 4 * (i + 1)) - from != covers[i].length)
+				return false;
+
+			for(int j = 0; j < covers[i].length; j++){
+				if((record.getShort(coverPosition + 2 * (from + j)) & 0xFFFF) != covers[i][j])
+					return false;
+			}
+		}
+
+		return true;
+	}
+}
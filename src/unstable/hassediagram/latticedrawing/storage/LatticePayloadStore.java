@@ -0,0 +1,157 @@
+package unstable.hassediagram.latticedrawing.storage;
+
+import java.io.*;
+import java.util.zip.*;
+
+import unstable.hassediagram.latticedrawing.formatters.*;
+import unstable.hassediagram.latticedrawing.layouts.*;
+
+/**
+ * This class represents an on-disk store of encoded lattice representations.
+ * Each representation is written once as it is and, if requested, compressed with gzip,
+ * so the stored files can be sent without any layout, conversion or compression.
+ * A file is written to a temporary file first and renamed, so a reader never sees a partial file.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-10-27
+ */
+public class LatticePayloadStore {
+	private static final String compressedExtension = ".gz";
+
+	private File directory;
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory is the root directory of the store.
+	 */
+	public LatticePayloadStore(File directory){
+		this.directory = directory;
+	}
+
+	/**
+	 * Gets the root directory of the store.
+	 *
+	 * @return The directory containing the stored files.
+	 */
+	public File getDirectory(){
+		return this.directory;
+	}
+
+	/**
+	 * Gets the name of a representation of a lattice, which is the last part of its key.
+	 * Only an image depends on the requested size.
+	 *
+	 * @param layout is the layout arranging the lattice elements.
+	 * @param format is the format of the representation.
+	 * @param size is the size of an image.
+	 * @return The name of the representation, like Json-Collision or Png-Collision-400.
+	 */
+	public static String getVariant(LatticeLayoutType layout, LatticeFormatType format, Integer size){
+		return format + "-" + layout + (format == LatticeFormatType.Png ? "-" + size : "");
+	}
+
+	/**
+	 * Finds a stored representation.
+	 *
+	 * @param key is the relative path of the representation.
+	 * @param compressed specifies whether the gzip compressed file is requested.
+	 * @return The stored file or null if no such file exists.
+	 */
+	public File find(String key, Boolean compressed){
+		File file = this.getFile(key, compressed);
+
+		return file.isFile() ? file : null;
+	}
+
+	/**
+	 * Writes a representation to the store.
+	 *
+	 * @param key is the relative path of the representation.
+	 * @param payload is the encoded representation.
+	 * @param compress specifies whether a gzip compressed file is written as well.
+	 * @throws IOException if a file cannot be written.
+	 */
+	public void write(String key, byte[] payload, Boolean compress) throws IOException {
+		this.write(key, payload, compress ? compress(payload) : null);
+	}
+
+	/**
+	 * Writes a representation which has been compressed already to the store.
+	 *
+	 * @param key is the relative path of the representation.
+	 * @param payload is the encoded representation.
+	 * @param compressed is the gzip compressed representation or null if no compressed file is written.
+	 * @throws IOException if a file cannot be written.
+	 */
+	public void write(String key, byte[] payload, byte[] compressed) throws IOException {
+		this.write(this.getFile(key, false), payload);
+
+		if(compressed != null)
+			this.write(this.getFile(key, true), compressed);
+	}
+
+	/**
+	 * Compresses a representation with gzip.
+	 *
+	 * @param payload is the encoded representation.
+	 * @return The gzip compressed representation.
+	 * @throws IOException if the representation cannot be compressed.
+	 */
+	public static byte[] compress(byte[] payload) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(payload.length / 2 + 64);
+		GZIPOutputStream gzip = new GZIPOutputStream(stream, 8192){
+			{
+				//a representation is compressed only once, so the best compression is worth it
+				this.def.setLevel(Deflater.BEST_COMPRESSION);
+			}
+		};
+
+		gzip.write(payload);
+		gzip.finish();
+		return stream.toByteArray();
+	}
+
+	/**
+	 * Gets the file of a representation.
+	 *
+	 * @param key is the relative path of the representation.
+	 * @param compressed specifies whether the gzip compressed file is requested.
+	 * @return The file of the representation.
+	 */
+	private File getFile(String key, Boolean compressed){
+		return new File(this.directory, compressed ? key + compressedExtension : key);
+	}
+
+	/**
+	 * Writes a file by renaming a temporary file written in the same directory.
+	 *
+	 * @param file is the file which will be written.
+	 * @param content is the content of the file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	private void write(File file, byte[] content) throws IOException {
+		File parent = file.getParentFile();
+
+		if(!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+			throw new IOException("Cannot create the directory " + parent);
+
+		File temp = File.createTempFile(file.getName(), ".tmp", parent);
+
+		try {
+			OutputStream stream = new FileOutputStream(temp);
+
+			try {
+				stream.write(content);
+			} finally {
+				stream.close();
+			}
+
+			//another request may have stored the same representation meanwhile
+			if(!temp.renameTo(file) && !file.isFile())
+				throw new IOException("Cannot store " + file);
+		} finally {
+			temp.delete();
+		}
+	}
+}
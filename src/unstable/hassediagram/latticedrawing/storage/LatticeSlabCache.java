@@ -0,0 +1,291 @@
+package unstable.hassediagram.latticedrawing.storage;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * This class represents a cache of encoded lattice representations outside of the java heap.
+ * The representations are appended to direct buffers of the same size, called slabs,
+ * so a large cache neither grows the heap nor prolongs the garbage collection.
+ * A full cache evicts the least recently used slab with all of its entries and reuses its memory,
+ * so the cache never allocates more than its capacity.
+ * An entry is pinned while it is written to a response, a pinned slab is never evicted.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-12-15
+ */
+public class LatticeSlabCache {
+	public static final int defaultSlabSize = 1024 * 1024;
+
+	private int slabSize;
+	private int maxSlabs;
+	private long size;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private HashMap<String, Entry> entries;
+	private LinkedHashMap<Slab, Slab> slabs;
+	private Slab current;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity is the maximal count of bytes outside of the heap.
+	 * @param slabSize is the size of a slab, which is the maximal size of an entry.
+	 */
+	public LatticeSlabCache(long capacity, int slabSize){
+		this.slabSize = slabSize;
+		this.maxSlabs = (int)Math.max(1, capacity / slabSize);
+		this.entries = new HashMap<String, Entry>();
+		//orders the slabs by their last access
+		this.slabs = new LinkedHashMap<Slab, Slab>(16, 0.75f, true);
+	}
+
+	/**
+	 * Gets the maximal count of bytes outside of the heap.
+	 *
+	 * @return The capacity of the cache.
+	 */
+	public long getCapacity(){
+		return (long)this.maxSlabs * this.slabSize;
+	}
+
+	/**
+	 * Gets the count of bytes allocated outside of the heap.
+	 *
+	 * @return The size of all allocated slabs.
+	 */
+	public synchronized long getAllocated(){
+		return (long)this.slabs.size() * this.slabSize;
+	}
+
+	/**
+	 * Gets the current count of cached bytes.
+	 *
+	 * @return The size of the cached entries.
+	 */
+	public synchronized long getSize(){
+		return this.size;
+	}
+
+	/**
+	 * Gets the count of cached entries.
+	 *
+	 * @return The count of entries.
+	 */
+	public synchronized int getCount(){
+		return this.entries.size();
+	}
+
+	/**
+	 * Gets the count of lookups which have found an entry.
+	 *
+	 * @return The count of hits.
+	 */
+	public synchronized long getHits(){
+		return this.hits;
+	}
+
+	/**
+	 * Gets the count of lookups which have found no entry.
+	 *
+	 * @return The count of misses.
+	 */
+	public synchronized long getMisses(){
+		return this.misses;
+	}
+
+	/**
+	 * Gets the count of entries removed together with their slabs.
+	 *
+	 * @return The count of evictions.
+	 */
+	public synchronized long getEvictions(){
+		return this.evictions;
+	}
+
+	/**
+	 * Finds and pins a cached entry. The entry has to be released after it has been read.
+	 *
+	 * @param key of the entry.
+	 * @return The pinned entry or null if no such entry exists.
+	 */
+	public synchronized Entry acquire(String key){
+		Entry entry = this.entries.get(key);
+
+		if(entry == null){
+			this.misses++;
+			return null;
+		}
+
+		this.hits++;
+		this.slabs.get(entry.slab);
+		entry.slab.pins++;
+
+		return entry;
+	}
+
+	/**
+	 * Adds an entry. An entry larger than a slab is not cached,
+	 * neither is an entry which does not fit anywhere because all slabs are pinned.
+	 *
+	 * @param key of the entry.
+	 * @param value is the encoded representation.
+	 */
+	public synchronized void put(String key, byte[] value){
+		if(value.length > this.slabSize || this.entries.containsKey(key))
+			return;
+
+		if(this.current == null || this.slabSize - this.current.used < value.length){
+			this.current = this.createSlab();
+
+			if(this.current == null)
+				return;
+		}
+
+		ByteBuffer buffer = this.current.buffer.duplicate();
+		buffer.position(this.current.used);
+		buffer.put(value);
+
+		Entry entry = new Entry(this.current, this.current.used, value.length);
+
+		this.current.used += value.length;
+		this.current.keys.add(key);
+		this.entries.put(key, entry);
+		this.slabs.get(this.current);
+		this.size += value.length;
+	}
+
+	/**
+	 * Gets an empty slab, either a new one or the least recently used one without pinned entries.
+	 *
+	 * @return The empty slab or null if every slab is pinned.
+	 */
+	private Slab createSlab(){
+		if(this.slabs.size() < this.maxSlabs){
+			Slab slab = new Slab(ByteBuffer.allocateDirect(this.slabSize));
+			this.slabs.put(slab, slab);
+
+			return slab;
+		}
+
+		for(Slab slab : this.slabs.keySet()){
+			if(slab.pins > 0)
+				continue;
+
+			for(String key : slab.keys){
+				this.size -= this.entries.remove(key).length;
+				this.evictions++;
+			}
+
+			slab.keys.clear();
+			slab.used = 0;
+			this.slabs.get(slab);
+
+			return slab;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Releases a pinned entry.
+	 *
+	 * @param entry is the entry returned by acquire.
+	 */
+	private synchronized void release(Entry entry){
+		entry.slab.pins--;
+	}
+
+	/**
+	 * This class represents a slab of memory outside of the heap.
+	 */
+	private static class Slab {
+		private ByteBuffer buffer;
+		private Vector<String> keys;
+		private int used;
+		private int pins;
+
+		/**
+		 * Constructor
+		 *
+		 * @param buffer is the direct buffer of the slab.
+		 */
+		public Slab(ByteBuffer buffer){
+			this.buffer = buffer;
+			this.keys = new Vector<String>();
+		}
+	}
+
+	/**
+	 * This class represents a cached entry located in a slab.
+	 */
+	public class Entry {
+		private Slab slab;
+		private int offset;
+		private int length;
+
+		/**
+		 * Constructor
+		 *
+		 * @param slab containing the entry.
+		 * @param offset is the position of the entry in the slab.
+		 * @param length is the count of bytes.
+		 */
+		private Entry(Slab slab, int offset, int length){
+			this.slab = slab;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * Gets the count of bytes.
+		 *
+		 * @return The length of the encoded representation.
+		 */
+		public int getLength(){
+			return this.length;
+		}
+
+		/**
+		 * Writes the entry to a stream without copying it to the heap first.
+		 *
+		 * @param stream is the output stream receiving the encoded representation.
+		 * @throws IOException if the stream cannot be written.
+		 */
+		public void writeTo(OutputStream stream) throws IOException {
+			WritableByteChannel channel = Channels.newChannel(stream);
+			ByteBuffer buffer = this.slab.buffer.duplicate();
+
+			buffer.position(this.offset);
+			buffer.limit(this.offset + this.length);
+
+			while(buffer.hasRemaining())
+				channel.write(buffer);
+		}
+
+		/**
+		 * Copies the entry to the heap.
+		 *
+		 * @return The encoded representation.
+		 */
+		public byte[] getBytes(){
+			byte[] bytes = new byte[this.length];
+			ByteBuffer buffer = this.slab.buffer.duplicate();
+
+			buffer.position(this.offset);
+			buffer.get(bytes);
+
+			return bytes;
+		}
+
+		/**
+		 * Releases the entry, so its slab can be evicted again.
+		 */
+		public void release(){
+			LatticeSlabCache.this.release(this);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package unstable.hassediagram.latticedrawing.storage;
+
+import java.nio.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+import unstable.hassediagram.latticedrawing.layouts.*;
+
+/**
+ * This class represents a layout which places the lattice elements at the positions of a stored layout,
+ * so a lattice is drawn like before without running the layout which has calculated the positions.
+ * The stored positions are mapped to the elements by the canonical labelling,
+ * so the layout of a lattice can be applied to every lattice isomorphic to it.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-12-08
+ */
+public class LatticeStoredLayout implements ILatticeLayout {
+	private ByteBuffer record;
+	private LatticeCanonicalForm form;
+
+	/**
+	 * Constructor
+	 *
+	 * @param record is a layout stored by the layout store.
+	 * @param form is the canonical form of the lattice which will be arranged.
+	 */
+	public LatticeStoredLayout(ByteBuffer record, LatticeCanonicalForm form){
+		this.record = record;
+		this.form = form;
+	}
+
+	/**
+	 * Arranges the lattice elements.
+	 *
+	 * @param lattice whose elements will be positioned.
+	 */
+	public void arrange(Lattice lattice){
+		float[] positions = LatticeLayoutStore.decodePositions(this.record);
+		LatticeElement[] elements = this.form.getElements();
+
+		if(positions.length != elements.length || positions.length != lattice.getStorage().size())
+			throw new IllegalStateException("The stored layout does not belong to the lattice");
+
+		for(int i = 0; i < elements.length; i++)
+			elements[i].getPoint().setX(positions[i]);
+
+		lattice.notifyLayoutListener(0);
+	}
+}
@@ -0,0 +1,191 @@
+package unstable.hassediagram.latticedrawing.test;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+import unstable.hassediagram.latticedrawing.storage.*;
+import unstable.hassediagram.latticedrawing.utils.*;
+
+/**
+ * This class reports the isomorphic lattices of whole dimensions, which share a single layout in the layout store.
+ * The canonical forms are calculated on a fork-join pool using all cores, lattices with the same hash
+ * are compared by their canonical covers, so a hash collision is not reported as a duplicate.
+ * <pre>
+ * {@code
+ * 	LatticeDedupReport <resources> <dimensions> [count of listed classes]
+ * 	LatticeDedupReport Content/Resources 2..12 20
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-12-22
+ */
+public class LatticeDedupReport {
+	private File resources;
+	private ConcurrentHashMap<Long, Vector<Entry>> entries;
+
+	/**
+	 * Constructor
+	 *
+	 * @param resources is the directory containing the text files or the archives of the dimensions.
+	 */
+	public LatticeDedupReport(File resources){
+		this.resources = resources;
+		this.entries = new ConcurrentHashMap<Long, Vector<Entry>>();
+	}
+
+	/**
+	 * Calculates the canonical forms of all lattices of a dimension.
+	 *
+	 * @param dimension is the dimension of the lattices.
+	 * @param pool is the pool calculating the canonical forms.
+	 * @return The count of lattices.
+	 * @throws IOException if the dimension cannot be read.
+	 */
+	public Integer add(final Integer dimension, ForkJoinPool pool) throws IOException {
+		File file = new File(this.resources, "dim" + dimension + LatticeArchive.extension);
+		final LatticeArchive archive = file.isFile() ? new LatticeArchive(file) : null;
+
+		try {
+			final Vector<Integer> numbers = LatticePrecompute.listNumbers(this.resources, dimension, archive);
+
+			pool.invoke(new RangeTask(new IRangeDelegate(){
+				public void compute(int position) throws IOException {
+					add(dimension, archive, numbers.get(position));
+				}
+			}, 0, numbers.size()));
+
+			return numbers.size();
+		} finally {
+			if(archive != null)
+				archive.close();
+		}
+	}
+
+	/**
+	 * Gets the classes of isomorphic lattices containing more than one lattice, the largest classes first.
+	 *
+	 * @return The paths of the lattices of each class.
+	 */
+	public Vector<Vector<String>> getDuplicates(){
+		Vector<Vector<String>> classes = new Vector<Vector<String>>();
+
+		for(Vector<Entry> candidates : this.entries.values()){
+			//lattices with the same hash are isomorphic only if their canonical covers are equal
+			Vector<Entry> remaining = new Vector<Entry>(candidates);
+
+			while(!remaining.isEmpty()){
+				Entry first = remaining.remove(0);
+				Vector<String> paths = new Vector<String>();
+
+				paths.add(first.path);
+
+				for(Iterator<Entry> iterator = remaining.iterator(); iterator.hasNext(); ){
+					Entry entry = iterator.next();
+
+					if(Arrays.deepEquals(first.covers, entry.covers)){
+						paths.add(entry.path);
+						iterator.remove();
+					}
+				}
+
+				if(paths.size() > 1){
+					Collections.sort(paths);
+					classes.add(paths);
+				}
+			}
+		}
+
+		Collections.sort(classes, new Comparator<Vector<String>>(){
+			public int compare(Vector<String> c1, Vector<String> c2){
+				int result = c2.size() - c1.size();
+
+				return result != 0 ? result : c1.get(0).compareTo(c2.get(0));
+			}
+		});
+
+		return classes;
+	}
+
+	/**
+	 * Calculates the canonical form of a lattice.
+	 *
+	 * @param dimension is the dimension of the lattice.
+	 * @param archive is the archive of the dimension or null if the text files are read.
+	 * @param number is the number of the lattice.
+	 * @throws IOException if the lattice cannot be read.
+	 */
+	private void add(Integer dimension, LatticeArchive archive, Integer number) throws IOException {
+		String path = "dim" + dimension + "/dim" + dimension + "_" + number;
+		Lattice lattice = archive != null ? archive.load(number) :
+			Lattice.loadFromText(LatticePrecompute.readText(new File(this.resources, path)));
+		LatticeCanonicalForm form = lattice.getCanonicalForm();
+		Vector<Entry> candidates = new Vector<Entry>();
+		Vector<Entry> previous = this.entries.putIfAbsent(form.getHash(), candidates);
+
+		(previous != null ? previous : candidates).add(new Entry(path, form.getCovers()));
+	}
+
+	/**
+	 * This class represents a lattice identified by its canonical covers.
+	 */
+	private static class Entry {
+		private String path;
+		private int[][] covers;
+
+		/**
+		 * Constructor
+		 *
+		 * @param path is the path of the lattice.
+		 * @param covers are the canonical covers of the lattice.
+		 */
+		public Entry(String path, int[][] covers){
+			this.path = path;
+			this.covers = covers;
+		}
+	}
+
+	/**
+	 * Reports the isomorphic lattices of the dimensions given by the arguments.
+	 *
+	 * @param args are the resource directory, the dimensions like 12, 9..12 or 5,7 and the count of listed classes.
+	 * @throws IOException if a file cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2){
+			System.err.println("LatticeDedupReport <resources> <dimensions> [count of listed classes]");
+			System.exit(1);
+		}
+
+		LatticeDedupReport report = new LatticeDedupReport(new File(args[0]));
+		ForkJoinPool pool = new ForkJoinPool();
+		int listed = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int count = 0;
+		long start = System.nanoTime();
+
+		try {
+			for(Integer dimension : RangeTask.parse(args[1]))
+				count += report.add(dimension, pool);
+		} finally {
+			pool.shutdown();
+		}
+
+		Vector<Vector<String>> classes = report.getDuplicates();
+		int duplicates = 0;
+
+		for(Vector<String> paths : classes)
+			duplicates += paths.size() - 1;
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format("%d lattices in %.1f s on %d threads, %.1f lattices/s",
+				count, seconds, pool.getParallelism(), count / seconds));
+		System.out.println(String.format("%d distinct lattices, %d duplicates in %d classes, %d layouts saved",
+				count - duplicates, duplicates, classes.size(), duplicates));
+
+		for(int i = 0; i < Math.min(listed, classes.size()); i++)
+			System.out.println(classes.get(i).size() + ": " + classes.get(i));
+	}
+}
@@ -0,0 +1,390 @@
+package unstable.hassediagram.latticedrawing.test;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.regex.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+import unstable.hassediagram.latticedrawing.formatters.*;
+import unstable.hassediagram.latticedrawing.layouts.*;
+import unstable.hassediagram.latticedrawing.storage.*;
+import unstable.hassediagram.latticedrawing.utils.*;
+
+/**
+ * This class computes the representations of all lattices of whole dimensions and writes them to the store
+ * used by the lattice servlet, so the servlet never computes a layout of these lattices.
+ * The lattices are computed on a fork-join pool using all cores. Each stored representation is appended to a checkpoint file
+ * by its key in the store, so an interrupted run, or a run with more formats, continues with the missing representations.
+ * <pre>
+ * {@code
+ * 	LatticePrecompute <resources> <store> <dimensions> [layouts] [formats]
+ * 	LatticePrecompute Content/Resources /var/lattices 9..12 Collision,Parallel Json,Binary,Svg
+ * }
+ * </pre>
+ * The store directory is the one given to the servlet by the init-param storeDirectory.
+ * The layouts are put into the layout store of that directory as well, so the servlet applies them to the isomorphic lattices
+ * and to the formats which have not been precomputed.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-12-01
+ */
+public class LatticePrecompute {
+	private static final String checkpointName = "precompute.checkpoint";
+	private static final String[] stages = { "load", "reduce", "build", "adjust", "format", "store" };
+	private static final int report = 500;
+
+	private File resources;
+	private LatticePayloadStore store;
+	private LatticeLayoutStore layoutStore;
+	private Vector<LatticeLayoutType> layouts;
+	private Vector<LatticeFormatType> formats;
+	private Set<String> finished;
+	private Writer checkpoint;
+	private AtomicLong[] times;
+	private AtomicInteger count;
+	private AtomicInteger failures;
+	private long start;
+
+	/**
+	 * Constructor
+	 *
+	 * @param resources is the directory containing the text files or the archives of the dimensions.
+	 * @param store is the store receiving the representations.
+	 * @param layoutStore is the store receiving the layouts.
+	 * @param layouts are the layouts arranging the lattice elements.
+	 * @param formats are the formats of the representations.
+	 * @param checkpoint is the file recording the finished lattices.
+	 * @throws IOException if the checkpoint file cannot be read or opened.
+	 */
+	public LatticePrecompute(File resources, LatticePayloadStore store, LatticeLayoutStore layoutStore,
+			Vector<LatticeLayoutType> layouts, Vector<LatticeFormatType> formats, File checkpoint) throws IOException {
+		this.resources = resources;
+		this.store = store;
+		this.layoutStore = layoutStore;
+		this.layouts = layouts;
+		this.formats = formats;
+		this.finished = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		this.times = new AtomicLong[stages.length];
+		this.count = new AtomicInteger();
+		this.failures = new AtomicInteger();
+
+		for(int i = 0; i < stages.length; i++)
+			this.times[i] = new AtomicLong();
+
+		if(checkpoint.isFile()){
+			BufferedReader reader = new BufferedReader(new FileReader(checkpoint));
+
+			try {
+				String line;
+
+				//a line broken by a crash does not match any lattice and is computed again
+				while((line = reader.readLine()) != null)
+					this.finished.add(line);
+			} finally {
+				reader.close();
+			}
+		}
+
+		checkpoint.getAbsoluteFile().getParentFile().mkdirs();
+		this.checkpoint = new BufferedWriter(new FileWriter(checkpoint, true));
+	}
+
+	/**
+	 * Computes all lattices of a dimension. The archive of the dimension is preferred to its text files.
+	 *
+	 * @param dimension is the dimension of the lattices.
+	 * @param pool is the pool computing the lattices.
+	 * @throws IOException if the dimension cannot be read.
+	 */
+	public void precompute(final Integer dimension, ForkJoinPool pool) throws IOException {
+		File file = new File(this.resources, "dim" + dimension + LatticeArchive.extension);
+		final LatticeArchive archive = file.isFile() ? new LatticeArchive(file) : null;
+
+		try {
+			final Vector<Integer> numbers = listNumbers(this.resources, dimension, archive);
+
+			System.out.println("dim" + dimension + ": " + numbers.size() + " lattices from " + (archive != null ? file : "text files"));
+
+			pool.invoke(new RangeTask(new IRangeDelegate(){
+				public void compute(int position){
+					Integer number = numbers.get(position);
+
+					//a single broken lattice does not stop the whole run, it is not recorded and computed again on the next run
+					try {
+						precompute(dimension, archive, number);
+					} catch (Exception e) {
+						failures.incrementAndGet();
+						System.err.println("dim" + dimension + "_" + number + ": " + e);
+					}
+				}
+			}, 0, numbers.size()));
+		} finally {
+			if(archive != null)
+				archive.close();
+		}
+	}
+
+	/**
+	 * Computes all representations of a lattice.
+	 *
+	 * @param dimension is the dimension of the lattice.
+	 * @param archive is the archive of the dimension or null if the text files are read.
+	 * @param number is the number of the lattice.
+	 * @throws IOException if the lattice cannot be read or stored.
+	 */
+	private void precompute(Integer dimension, LatticeArchive archive, Integer number) throws IOException {
+		String path = "dim" + dimension + "/dim" + dimension + "_" + number;
+		Boolean computed = false;
+
+		for(LatticeLayoutType layout : this.layouts){
+			Vector<LatticeFormatType> formats = new Vector<LatticeFormatType>();
+
+			for(LatticeFormatType format : this.formats){
+				if(!this.finished.contains(this.getKey(path, layout, format)))
+					formats.add(format);
+			}
+
+			if(formats.isEmpty())
+				continue;
+
+			//each lattice is loaded again, because a layout cannot be replaced by another one
+			long time = System.nanoTime();
+			LatticeParser parser = archive != null ? archive.getParser(number) :
+				new LatticeParser(readText(new File(this.resources, path)));
+			time = this.measure(0, time);
+
+			String xml = parser.parse();
+			time = this.measure(1, time);
+
+			Lattice lattice = Lattice.load(xml);
+			time = this.measure(2, time);
+
+			lattice.adjust(layout);
+			time = this.measure(3, time);
+
+			this.layoutStore.put(lattice.getCanonicalForm(), layout);
+			time = this.measure(5, time);
+
+			for(LatticeFormatType format : formats){
+				String key = this.getKey(path, layout, format);
+				ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+				if(format == LatticeFormatType.Png)
+					new LatticePngFormatter(lattice).Format(stream);
+				else
+					lattice.saveTo(format, stream);
+
+				time = this.measure(4, time);
+
+				this.store.write(key, stream.toByteArray(), format != LatticeFormatType.Png);
+				time = this.measure(5, time);
+
+				this.finish(key);
+			}
+
+			computed = true;
+		}
+
+		//the lattices finished by a previous run are not counted in the throughput
+		if(!computed)
+			return;
+
+		int count = this.count.incrementAndGet();
+
+		if(count % report == 0)
+			this.printProgress(count);
+	}
+
+	/**
+	 * Adds the time of a stage.
+	 *
+	 * @param stage is the position of the stage.
+	 * @param start is the time when the stage has started.
+	 * @return The current time, which is the start of the next stage.
+	 */
+	private long measure(int stage, long start){
+		long time = System.nanoTime();
+		this.times[stage].addAndGet(time - start);
+
+		return time;
+	}
+
+	/**
+	 * Gets the key of a representation in the store.
+	 *
+	 * @param path is the path of the lattice.
+	 * @param layout is the layout arranging the lattice elements.
+	 * @param format is the format of the representation.
+	 * @return The path of the lattice followed by its variant.
+	 */
+	private String getKey(String path, LatticeLayoutType layout, LatticeFormatType format){
+		return path + "/" + LatticePayloadStore.getVariant(layout, format, LatticePngFormatter.defaultSize);
+	}
+
+	/**
+	 * Records a stored representation in the checkpoint file.
+	 *
+	 * @param name is the key of the representation in the store.
+	 * @throws IOException if the checkpoint file cannot be written.
+	 */
+	private void finish(String name) throws IOException {
+		synchronized(this.checkpoint){
+			this.checkpoint.write(name + "\n");
+			this.checkpoint.flush();
+		}
+
+		this.finished.add(name);
+	}
+
+	/**
+	 * Prints the count of computed lattices and the throughput.
+	 *
+	 * @param count of computed lattices.
+	 */
+	private void printProgress(int count){
+		double seconds = (System.nanoTime() - this.start) / 1e9;
+
+		System.out.println(String.format("%d lattices in %.1f s, %.1f lattices/s", count, seconds, count / seconds));
+	}
+
+	/**
+	 * Prints the throughput and the time spent in each stage summed over all threads.
+	 */
+	private void printStatistics(){
+		int count = this.count.get();
+
+		this.printProgress(count);
+		System.out.println(this.failures.get() + " failures");
+
+		for(int i = 0; i < stages.length; i++){
+			long time = this.times[i].get();
+
+			System.out.println(String.format("%-8s %10.1f ms %10.1f us/lattice", stages[i], time / 1e6, count > 0 ? time / 1e3 / count : 0.0));
+		}
+	}
+
+	/**
+	 * Closes the checkpoint file and the layout store.
+	 *
+	 * @throws IOException if a file cannot be closed.
+	 */
+	private void close() throws IOException {
+		try {
+			this.checkpoint.close();
+		} finally {
+			this.layoutStore.close();
+		}
+	}
+
+	/**
+	 * Lists the numbers of all lattices of a dimension.
+	 *
+	 * @param resources is the directory containing the text files of the dimensions.
+	 * @param dimension is the dimension of the lattices.
+	 * @param archive is the archive of the dimension or null if the text files are listed.
+	 * @return The numbers in ascending order.
+	 * @throws IOException if the dimension cannot be read.
+	 */
+	static Vector<Integer> listNumbers(File resources, Integer dimension, LatticeArchive archive) throws IOException {
+		Vector<Integer> numbers = new Vector<Integer>();
+
+		if(archive != null){
+			for(int number = 0; number < archive.getCount(); number++){
+				if(archive.contains(number))
+					numbers.add(number);
+			}
+
+			return numbers;
+		}
+
+		String[] names = new File(resources, "dim" + dimension).list();
+		Pattern pattern = Pattern.compile("dim" + dimension + "_([0-9]+)");
+
+		if(names == null)
+			throw new FileNotFoundException(new File(resources, "dim" + dimension).toString());
+
+		for(String name : names){
+			Matcher matcher = pattern.matcher(name);
+
+			if(matcher.matches())
+				numbers.add(Integer.parseInt(matcher.group(1)));
+		}
+
+		Collections.sort(numbers);
+
+		return numbers;
+	}
+
+	/**
+	 * Reads a text file.
+	 *
+	 * @param file is the text file.
+	 * @return The content of the file.
+	 * @throws IOException if the file cannot be read.
+	 */
+	static String readText(File file) throws IOException {
+		byte[] buffer = new byte[(int)file.length()];
+		DataInputStream stream = new DataInputStream(new FileInputStream(file));
+
+		try {
+			stream.readFully(buffer);
+		} finally {
+			stream.close();
+		}
+
+		return new String(buffer);
+	}
+
+	/**
+	 * Computes the dimensions given by the arguments.
+	 *
+	 * @param args are the resource directory, the store directory, the dimensions like 12, 9..12 or 5,7,
+	 * the layouts and the formats, both separated by commas.
+	 * @throws IOException if a file cannot be read or written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 3){
+			System.err.println("LatticePrecompute <resources> <store> <dimensions> [layouts] [formats]");
+			System.exit(1);
+		}
+
+		Vector<LatticeLayoutType> layouts = new Vector<LatticeLayoutType>();
+		Vector<LatticeFormatType> formats = new Vector<LatticeFormatType>();
+
+		for(String value : (args.length > 3 ? args[3] : "Collision").split(","))
+			layouts.add(LatticeLayoutType.parse(value));
+
+		for(String value : (args.length > 4 ? args[4] : "Json,Binary,Svg").split(","))
+			formats.add(LatticeFormatType.parse(value));
+
+		Vector<Integer> dimensions = RangeTask.parse(args[2]);
+
+		//the servlet reads the files of the current layout version only
+		File directory = new File(args[1], "v" + LatticeLayoutFactory.version);
+		//the layout store keeps the layout version in its keys, so it is shared by all versions like the one of the servlet
+		LatticeLayoutStore layoutStore = new LatticeLayoutStore(new File(args[1], "layouts.map"),
+				LatticeLayoutStore.defaultSize, LatticeLayoutStore.defaultSlots);
+		LatticePrecompute precompute = new LatticePrecompute(new File(args[0]), new LatticePayloadStore(directory),
+				layoutStore, layouts, formats, new File(directory, checkpointName));
+		ForkJoinPool pool = new ForkJoinPool();
+
+		System.out.println("Computing " + layouts + " as " + formats + " on " + pool.getParallelism() + " threads");
+
+		if(layoutStore.isReadOnly())
+			System.err.println("The layout store " + layoutStore.getFile() + " is written by another process, the layouts are not stored");
+
+		try {
+			precompute.start = System.nanoTime();
+
+			for(Integer dimension : dimensions)
+				precompute.precompute(dimension, pool);
+
+			precompute.printStatistics();
+		} finally {
+			pool.shutdown();
+			precompute.close();
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package unstable.hassediagram.latticedrawing.utils;
+
+import java.io.*;
+
+/**
+ * This interface represents a delegate for processing a single position of a range, used by the range task.
+ * 
+ * @author Eugen Petrosean
+ * @since 2011-01-26
+ */
+public interface IRangeDelegate {
+	/**
+	 * Processes a position of the range.
+	 * 
+	 * @param position is the position which will be processed.
+	 * @throws IOException if the position cannot be processed.
+	 */
+	void compute(int position) throws IOException;
+}
@@ -0,0 +1,78 @@
+package unstable.hassediagram.latticedrawing.utils;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class processes a range of positions on a fork-join pool by splitting it until a single position is left.
+ * The batch tools use it to process all lattices of the corpus on all cores, one lattice per position.
+ * 
+ * @author Eugen Petrosean
+ * @since 2011-01-26
+ */
+public class RangeTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	private IRangeDelegate delegate;
+	private int from;
+	private int to;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param delegate processes each position.
+	 * @param from is the first position of the range.
+	 * @param to is the position after the range.
+	 */
+	public RangeTask(IRangeDelegate delegate, int from, int to){
+		this.delegate = delegate;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Processes the position or splits the range into two halves.
+	 */
+	protected void compute(){
+		if(this.to - this.from > 1){
+			int middle = (this.from + this.to) >>> 1;
+
+			invokeAll(new RangeTask(this.delegate, this.from, middle), new RangeTask(this.delegate, middle, this.to));
+			return;
+		}
+
+		if(this.to == this.from)
+			return;
+
+		try {
+			this.delegate.compute(this.from);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Parses a list of ranges separated by commas, like 12, 9..12 or 5,7.
+	 * 
+	 * @param value is the list of ranges, each range given by its first and last number.
+	 * @return The numbers of all ranges in the given order.
+	 * @throws NumberFormatException if a range is not a number or two numbers.
+	 */
+	public static Vector<Integer> parse(String value){
+		Vector<Integer> numbers = new Vector<Integer>();
+
+		for(String part : value.split(",")){
+			String[] range = part.trim().split("\\.\\.");
+			int last = Integer.parseInt(range[range.length - 1].trim());
+
+			if(range.length > 2)
+				throw new NumberFormatException("Not a range: " + part);
+
+			for(int number = Integer.parseInt(range[0].trim()); number <= last; number++)
+				numbers.add(number);
+		}
+
+		return numbers;
+	}
+}
@@ -0,0 +1,65 @@
+package unstable.hassediagram.latticedrawing.web;
+
+/**
+ * This class represents a converted lattice together with the state of its layout.
+ * A partially adjusted lattice is sent to the client but it is neither cached nor stored.
+ * A textual lattice carries its gzip compressed bytes as well, so it is compressed once by the computation.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-11-03
+ */
+public class LatticePayload {
+	private byte[] bytes;
+	private byte[] compressedBytes;
+	private Boolean partial;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bytes is the converted lattice.
+	 * @param partial specifies whether the layout has been stopped by the deadline.
+	 */
+	public LatticePayload(byte[] bytes, Boolean partial){
+		this(bytes, null, partial);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param bytes is the converted lattice.
+	 * @param compressedBytes is the gzip compressed lattice or null if the lattice is not compressed.
+	 * @param partial specifies whether the layout has been stopped by the deadline.
+	 */
+	public LatticePayload(byte[] bytes, byte[] compressedBytes, Boolean partial){
+		this.bytes = bytes;
+		this.compressedBytes = compressedBytes;
+		this.partial = partial;
+	}
+
+	/**
+	 * Gets the converted lattice.
+	 *
+	 * @return The bytes of the converted lattice.
+	 */
+	public byte[] getBytes(){
+		return this.bytes;
+	}
+
+	/**
+	 * Gets the gzip compressed lattice.
+	 *
+	 * @return The compressed bytes or null if the lattice is not compressed, like an image.
+	 */
+	public byte[] getCompressedBytes(){
+		return this.compressedBytes;
+	}
+
+	/**
+	 * Returns true if the layout has been stopped by the deadline.
+	 *
+	 * @return True whether the lattice has been adjusted partially.
+	 */
+	public Boolean isPartial(){
+		return this.partial;
+	}
+}
@@ -0,0 +1,143 @@
+package unstable.hassediagram.latticedrawing.web;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+import unstable.hassediagram.latticedrawing.formatters.*;
+import unstable.hassediagram.latticedrawing.layouts.*;
+
+/**
+ * This class represents a layout listener writing the progress of a layout as server-sent events.
+ * The initial positions are sent as the json format, each iteration sends the x coordinates which have changed.
+ * <pre>
+ * {@code
+ * 	event: lattice
+ * 	data: [{"name":"1","markable":false,"x":0.0,"y":6.0,"dependents":["2","3"]},...]
+ *
+ * 	event: delta
+ * 	data: {"iteration":1,"x":{"2":-0.75,"3":0.75}}
+ *
+ * 	event: done
+ * 	data: {"iteration":20,"partial":false}
+ * }
+ * </pre>
+ *
+ * @author Eugen Petrosean
+ * @since 2010-11-10
+ */
+public class LatticeProgressWriter implements ILatticeLayoutListener {
+	private Writer writer;
+	private HashMap<LatticeElement, Float> positions;
+	private Integer iteration = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param stream is the output stream receiving the events.
+	 * @throws IOException if the encoding is not supported.
+	 */
+	public LatticeProgressWriter(OutputStream stream) throws IOException {
+		this.writer = new OutputStreamWriter(stream, "UTF-8");
+		this.positions = new HashMap<LatticeElement, Float>();
+	}
+
+	/**
+	 * Writes the initial positions or the positions changed by an iteration.
+	 * A client which has gone stops the layout.
+	 *
+	 * @param lattice whose elements have been moved.
+	 * @param iteration is the count of finished iterations, zero for the initial positions.
+	 */
+	public void arranged(Lattice lattice, Integer iteration){
+		try {
+			if(this.positions.isEmpty())
+				this.writeLattice(lattice);
+			else
+				this.writeDelta(lattice, iteration);
+
+			this.iteration = iteration;
+		} catch (IOException e) {
+			throw new CancellationException("The progress cannot be written: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the last event after the lattice has been adjusted.
+	 *
+	 * @param lattice which has been adjusted.
+	 * @throws IOException if the event cannot be written.
+	 */
+	public void finish(Lattice lattice) throws IOException {
+		//a layout without any notification sends its final positions
+		if(this.positions.isEmpty())
+			this.writeLattice(lattice);
+
+		this.write("done", "{\"iteration\":" + this.iteration + ",\"partial\":" + lattice.isPartial() + "}");
+	}
+
+	/**
+	 * Writes the final positions of a lattice which has been adjusted before, so no layout runs.
+	 *
+	 * @param json is the lattice converted to the json format.
+	 * @throws IOException if the events cannot be written.
+	 */
+	public void finish(String json) throws IOException {
+		this.write("lattice", json);
+		this.write("done", "{\"iteration\":" + this.iteration + ",\"partial\":false}");
+	}
+
+	/**
+	 * Writes all lattice elements with their positions.
+	 *
+	 * @param lattice whose elements will be written.
+	 * @throws IOException if the event cannot be written.
+	 */
+	private void writeLattice(Lattice lattice) throws IOException {
+		for(LatticeElement e : lattice.getStorage())
+			this.positions.put(e, e.getPoint().getX());
+
+		this.write("lattice", lattice.saveAs(LatticeFormatType.Json));
+	}
+
+	/**
+	 * Writes the x coordinates which have changed since the previous event.
+	 *
+	 * @param lattice whose elements have been moved.
+	 * @param iteration is the count of finished iterations.
+	 * @throws IOException if the event cannot be written.
+	 */
+	private void writeDelta(Lattice lattice, Integer iteration) throws IOException {
+		StringBuilder delta = new StringBuilder("{\"iteration\":" + iteration + ",\"x\":{");
+		Boolean first = true;
+
+		for(LatticeElement e : lattice.getStorage()){
+			Float x = e.getPoint().getX();
+
+			if(x.equals(this.positions.get(e)))
+				continue;
+
+			if(!first)
+				delta.append(",");
+
+			delta.append("\"" + ((int)e.getName().toCharArray()[0] - 97) + "\":" + x);
+			this.positions.put(e, x);
+			first = false;
+		}
+
+		this.write("delta", delta.append("}}").toString());
+	}
+
+	/**
+	 * Writes a single event and sends it immediately.
+	 *
+	 * @param event is the name of the event.
+	 * @param data is the json data of the event.
+	 * @throws IOException if the event cannot be written.
+	 */
+	private void write(String event, String data) throws IOException {
+		this.writer.write("event: " + event + "\ndata: " + data + "\n\n");
+		this.writer.flush();
+	}
+}
@@ -0,0 +1,153 @@
+package unstable.hassediagram.latticedrawing.web;
+
+import java.io.*;
+import java.util.*;
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import unstable.hassediagram.latticedrawing.analysis.*;
+import unstable.hassediagram.latticedrawing.formatters.*;
+
+/**
+ * Servlet implementation class LatticeQueryServlet
+ * 
+ * Selects the lattices of the corpus by their structural properties, like
+ * LatticeQueryServlet?dimension=11&modular=true&width=..4&height=6&limit=100.
+ * A range is given as 4, ..4, 3.. or 3..5, a boolean property as true or false.
+ */
+public class LatticeQueryServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+	private static final int defaultLimit = 1000;
+	
+	private volatile LatticePropertyIndex index;
+       
+    /**
+     * @see HttpServlet#HttpServlet()
+     */
+    public LatticeQueryServlet() {
+        super();
+    }
+
+	/**
+	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
+	 */
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		LatticePropertyIndex index = this.getIndex();
+		
+		if(index == null){
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		
+		HashMap<LatticeProperty, Integer[]> ranges = new HashMap<LatticeProperty, Integer[]>();
+		int limit = defaultLimit;
+		
+		try {
+			for(Enumeration<?> names = request.getParameterNames(); names.hasMoreElements(); ){
+				String name = (String)names.nextElement();
+				LatticeProperty property = LatticeProperty.parse(name);
+				
+				if(name.equals("limit"))
+					limit = Integer.parseInt(request.getParameter(name));
+				else if(property != null)
+					ranges.put(property, this.parseRange(request.getParameter(name)));
+			}
+		} catch (NumberFormatException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+		
+		long start = System.nanoTime();
+		BitSet rows = index.query(ranges);
+		long micros = (System.nanoTime() - start) / 1000;
+		StringBuilder builder = new StringBuilder();
+		int count = 0;
+		
+		builder.append("{\"count\":").append(rows.cardinality());
+		builder.append(",\"micros\":").append(micros);
+		builder.append(",\"lattices\":[");
+		
+		for(int row = rows.nextSetBit(0); row >= 0 && count < limit; row = rows.nextSetBit(row + 1), count++){
+			if(count > 0)
+				builder.append(',');
+			
+			builder.append("{\"dimension\":").append(index.getDimension(row));
+			builder.append(",\"number\":").append(index.getNumber(row));
+			
+			for(LatticeProperty property : LatticeProperty.values()){
+				if(property == LatticeProperty.Dimension)
+					continue;
+				
+				String name = Character.toLowerCase(property.name().charAt(0)) + property.name().substring(1);
+				int value = index.getValue(row, property);
+				
+				builder.append(",\"").append(name).append("\":");
+				
+				if(property.isBoolean())
+					builder.append(value != 0);
+				else
+					builder.append(value);
+			}
+			
+			builder.append(",\"markedSet\":").append(index.getMarkedSet(row));
+			builder.append('}');
+		}
+		
+		builder.append("]}");
+		
+		response.setContentType(LatticeFormatType.Json.getContentType());
+		response.getWriter().write(builder.toString());
+	}
+	
+	/**
+	 * Parses a range of a property like 4, ..4, 3.., 3..5, true or false.
+	 * 
+	 * @param value is the range of the query parameter.
+	 * @return The smallest and the largest value, either of them may be null.
+	 */
+	private Integer[] parseRange(String value){
+		value = value.trim();
+		
+		if(value.equalsIgnoreCase("true"))
+			return new Integer[]{ 1, 1 };
+		
+		if(value.equalsIgnoreCase("false"))
+			return new Integer[]{ 0, 0 };
+		
+		int separator = value.indexOf("..");
+		
+		if(separator < 0){
+			Integer exact = Integer.parseInt(value);
+			return new Integer[]{ exact, exact };
+		}
+		
+		String min = value.substring(0, separator).trim();
+		String max = value.substring(separator + 2).trim();
+		
+		return new Integer[]{ min.length() > 0 ? Integer.parseInt(min) : null, max.length() > 0 ? Integer.parseInt(max) : null };
+	}
+	
+	/**
+	 * Gets the property index, which is read from the resources on the first query.
+	 * 
+	 * @return The property index or null if the resources do not contain it.
+	 * @throws IOException if the index cannot be read.
+	 */
+	private LatticePropertyIndex getIndex() throws IOException {
+		if(this.index != null)
+			return this.index;
+		
+		synchronized(this){
+			if(this.index == null){
+				File file = new File(this.getServletContext().getRealPath("/Resources/" + LatticePropertyIndex.fileName));
+				
+				if(!file.isFile())
+					return null;
+				
+				this.index = LatticePropertyIndex.read(file);
+			}
+			
+			return this.index;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package unstable.hassediagram.latticedrawing.web;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import unstable.hassediagram.latticedrawing.core.*;
+
+/**
+ * This class represents a coalescing layer running only one computation per key at a time.
+ * Concurrent requests for the same key wait for the running computation and get its result,
+ * or its error, while requests for different keys are not blocked.
+ *
+ * @author Eugen Petrosean
+ * @since 2010-10-20
+ */
+public class LatticeRequestCoalescer<T> {
+	private ConcurrentHashMap<String, FutureTask<T>> tasks;
+
+	/**
+	 * Constructor
+	 */
+	public LatticeRequestCoalescer(){
+		this.tasks = new ConcurrentHashMap<String, FutureTask<T>>();
+	}
+
+	/**
+	 * Gets the count of the running computations.
+	 *
+	 * @return The count of keys being computed.
+	 */
+	public int getCount(){
+		return this.tasks.size();
+	}
+
+	/**
+	 * Executes the computation of a key or waits for the one already running.
+	 * The computation runs on the thread of the first request. A computation which has been cancelled
+	 * is repeated by a waiting request whose own deadline has not been reached yet.
+	 * A waiting request gives up with a CancellationException when its deadline is reached.
+	 *
+	 * @param key identifies the result.
+	 * @param deadline is the deadline of the request or null if the request has no time limit.
+	 * @param computation creates the result.
+	 * @return The result of the computation.
+	 * @throws IOException if the computation has failed or the waiting thread has been interrupted.
+	 * @throws CancellationException if the deadline has been reached while waiting for the computation.
+	 */
+	public T execute(String key, LatticeDeadline deadline, Callable<T> computation) throws IOException {
+		while(true){
+			FutureTask<T> task = new FutureTask<T>(computation);
+			FutureTask<T> running = this.tasks.putIfAbsent(key, task);
+
+			if(running == null){
+				running = task;
+
+				try {
+					task.run();
+				} finally {
+					this.tasks.remove(key, task);
+				}
+			}
+
+			try {
+				//a waiter holds its thread only until its own deadline, so a slow key cannot take every worker
+				if(running != task && deadline != null)
+					return running.get(deadline.getRemaining(), TimeUnit.MILLISECONDS);
+
+				return running.get();
+			} catch (TimeoutException e) {
+				throw new CancellationException("The deadline has been reached while waiting for " + key);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for " + key);
+			} catch (ExecutionException e) {
+				//every waiter gets the error of the shared computation
+				Throwable cause = e.getCause();
+
+				//the computation has been cancelled by the request running it, not by this one
+				if(cause instanceof CancellationException && running != task && (deadline == null || !deadline.isExpired()))
+					continue;
+
+				if(cause instanceof IOException)
+					throw (IOException)cause;
+				if(cause instanceof RuntimeException)
+					throw (RuntimeException)cause;
+				if(cause instanceof Error)
+					throw (Error)cause;
+
+				throw new IOException(cause);
+			}
+		}
+	}
+}
@@ -1,17 +1,42 @@
 package unstable.hassediagram.latticedrawing.web;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import javax.servlet.*;
 import javax.servlet.http.*;
 
 import unstable.hassediagram.latticedrawing.core.*;
 import unstable.hassediagram.latticedrawing.formatters.*;
+import unstable.hassediagram.latticedrawing.layouts.*;
+import unstable.hassediagram.latticedrawing.storage.*;
 
 /**
  * Servlet implementation class LatticeServlet
  */
 public class LatticeServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
+	private static final long defaultCacheSize = 64L * 1024 * 1024;
+	private static final long defaultFrontCacheSize = 4L * 1024 * 1024;
+	private static final int maxAge = 86400;
+	private static final int maxBatchSize = 10000;
+	private static final long defaultTimeout = 30000;
+	private static final int retryAfter = 5;
+	
+	private LatticeByteCache cache;
+	private LatticeSlabCache slabCache;
+	private LatticePayloadStore store;
+	private LatticeLayoutStore layoutStore;
+	private ConcurrentHashMap<String, LatticeArchive> archives;
+	private LatticeRequestCoalescer<LatticePayload> coalescer;
+	private ThreadPoolExecutor executor;
+	private int batchWindow;
+	private long timeout;
+	private long deadline;
+	private long deployed;
        
     /**
      * @see HttpServlet#HttpServlet()
@@ -20,21 +45,1064 @@ public class LatticeServlet extends HttpServlet {
         super();
     }
 
+	/**
+	 * @see HttpServlet#init()
+	 */
+	public void init() throws ServletException {
+		//a deployment may bring another layout version, so the responses are never older than it
+		this.deployed = System.currentTimeMillis();
+		
+		String cacheSize = this.getInitParameter("cacheSize");
+		
+		//the cache outside of the heap becomes the main tier, so the heap only keeps a small front cache of it
+		String offHeapCacheSize = this.getInitParameter("offHeapCacheSize");
+		
+		if(offHeapCacheSize != null && Long.parseLong(offHeapCacheSize) > 0)
+			this.slabCache = new LatticeSlabCache(Long.parseLong(offHeapCacheSize), LatticeSlabCache.defaultSlabSize);
+		
+		this.cache = new LatticeByteCache(cacheSize != null ? Long.parseLong(cacheSize) : 
+			this.slabCache != null ? defaultFrontCacheSize : defaultCacheSize);
+		
+		this.coalescer = new LatticeRequestCoalescer<LatticePayload>();
+		this.archives = new ConcurrentHashMap<String, LatticeArchive>();
+		
+		//the lattices are computed on a worker per core, the requests exceeding the queue are refused
+		int processors = Runtime.getRuntime().availableProcessors();
+		String queueSize = this.getInitParameter("queueSize");
+		String timeout = this.getInitParameter("timeout");
+		
+		this.executor = new ThreadPoolExecutor(processors, processors, 0L, TimeUnit.MILLISECONDS, 
+				new ArrayBlockingQueue<Runnable>(queueSize != null ? Integer.parseInt(queueSize) : 4 * processors));
+		this.timeout = timeout != null ? Long.parseLong(timeout) : defaultTimeout;
+		
+		//the layout stops before the timeout, so the client gets a partial layout instead of an error
+		String deadline = this.getInitParameter("deadline");
+		this.deadline = deadline != null ? Long.parseLong(deadline) : this.timeout * 3 / 4;
+		this.batchWindow = 2 * processors;
+		
+		String storeDirectory = this.getInitParameter("storeDirectory");
+		File temp = (File)this.getServletContext().getAttribute("javax.servlet.context.tempdir");
+		
+		//a new layout version does not use the files stored by the previous one
+		if(storeDirectory != null)
+			this.store = new LatticePayloadStore(new File(storeDirectory, "v" + LatticeLayoutFactory.version));
+		else if(temp != null)
+			this.store = new LatticePayloadStore(new File(temp, "lattices/v" + LatticeLayoutFactory.version));
+		
+		//the layouts survive a redeployment and are shared with the other servlet containers of the host
+		String layoutStore = this.getInitParameter("layoutStore");
+		String layoutStoreSize = this.getInitParameter("layoutStoreSize");
+		File layoutFile = layoutStore != null ? new File(layoutStore) : 
+			storeDirectory != null ? new File(storeDirectory, "layouts.map") : 
+			temp != null ? new File(temp, "lattices/layouts.map") : null;
+		
+		if(layoutFile != null){
+			try {
+				this.layoutStore = new LatticeLayoutStore(layoutFile, 
+						layoutStoreSize != null ? Long.parseLong(layoutStoreSize) : LatticeLayoutStore.defaultSize, LatticeLayoutStore.defaultSlots);
+			} catch (IOException e) {
+				this.log("Cannot open the layout store " + layoutFile, e);
+			}
+		}
+	}
+
+	/**
+	 * @see HttpServlet#destroy()
+	 */
+	public void destroy() {
+		this.executor.shutdownNow();
+		
+		for(LatticeArchive archive : this.archives.values()){
+			try {
+				archive.close();
+			} catch (IOException e) {
+				this.log("Cannot close the archive " + archive.getFile(), e);
+			}
+		}
+		
+		if(this.layoutStore != null){
+			try {
+				this.layoutStore.close();
+			} catch (IOException e) {
+				this.log("Cannot close the layout store " + this.layoutStore.getFile(), e);
+			}
+		}
+	}
+
 	/**
 	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
 	 */
-	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+	protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException, IOException {
 		String number = request.getParameter("number"); 
 		String dimension = request.getParameter("dimension");
+		String layout = request.getParameter("layout");
+		LatticeFormatType format = LatticeFormatType.parse(request.getParameter("format"));
 		String path = "dim" + dimension + "/dim" + dimension + "_" + number;
 		
-		String fileName = this.getServletContext().getRealPath("/Resources/" + path);
-		Lattice lattice = Lattice.loadFromFile(fileName);	
+		if(request.getParameter("stats") != null){
+			this.writeStatistics(response);
+			return;
+		}
+		
+		//a range or a list of numbers is answered as newline delimited json
+		if(number != null && (number.contains("..") || number.contains(","))){
+			Vector<Integer> numbers = this.parseNumbers(number);
+			
+			if(!this.isNumber(dimension) || numbers == null){
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+				return;
+			}
+			
+			this.executeBatch(request, response, dimension, numbers, LatticeLayoutType.parse(layout));
+			return;
+		}
+		
+		File source = this.isNumber(dimension) && this.isNumber(number) ? this.findSource(path) : null;
+		
+		if(source == null){
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		
+		final LatticeLayoutType layoutType = LatticeLayoutType.parse(layout);
+		final Integer size = this.parseSize(request.getParameter("size"));
+		final String variant = this.getVariant(layoutType, format, size);
+		final String key = path + "/" + variant;
+		final String file = path;
+		final LatticeFormatType type = format;
+		final Boolean compressed = format != LatticeFormatType.Png && this.acceptsGzip(request);
+		final String contentKey = this.getContentKey(key, compressed);
+		
+		//the deadline starts when the request arrives, so the time waiting in the queue counts as well
+		final LatticeDeadline deadline = new LatticeDeadline(this.deadline);
+		
+		//the progress of the layout is streamed as server-sent events
+		if(request.getParameter("progress") != null){
+			this.execute(request, response, deadline, new Callable<Object>(){
+				public Object call() throws Exception {
+					writeProgress(response, file, layoutType, deadline);
+					return null;
+				}
+			});
+			return;
+		}
+		
+		//the resources never change between deployments, so repeated views are answered before any parsing
+		String tag = "\"" + Long.toHexString(source.length()) + "-" + Long.toHexString(source.lastModified()) + "-" + 
+			LatticeLayoutFactory.version + "-" + variant + (compressed ? "-gzip" : "") + "\"";
+		long lastModified = Math.max(source.lastModified(), this.deployed) / 1000 * 1000;
+		
+		if(format != LatticeFormatType.Png)
+			response.setHeader("Vary", "Accept-Encoding");
+		
+		response.setHeader("ETag", tag);
+		response.setDateHeader("Last-Modified", lastModified);
+		response.setHeader("Cache-Control", "public, max-age=" + maxAge);
+		
+		if(this.isNotModified(request, tag, lastModified)){
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		
+		//the cached lattices are answered on the request thread, the heap cache being the front of the cache outside of the heap
+		byte[] payload = this.cache.get(contentKey);
+		
+		if(payload != null){
+			this.writeContent(response, format, compressed, payload, false);
+			return;
+		}
+		
+		LatticeSlabCache.Entry entry = this.slabCache != null ? this.slabCache.acquire(contentKey) : null;
+		
+		if(entry != null){
+			this.writeEntry(response, format, compressed, entry);
+			return;
+		}
+		
+		//the stored files are sent without any layout or conversion once they have been evicted from the caches
+		File stored = this.store != null ? this.store.find(key, compressed) : null;
+		
+		if(stored != null){
+			this.sendFile(request, response, format, stored, compressed);
+			return;
+		}
+		
+		//the layout runs on the worker pool, so the request threads stay free for the cheap requests
+		this.execute(request, response, deadline, new Callable<Object>(){
+			public Object call() throws Exception {
+				LatticePayload result = computePayload(file, layoutType, type, size, deadline);
+				
+				//a timed out request has been answered already
+				if(!deadline.isCancelled())
+					writeContent(response, type, compressed, compressed ? result.getCompressedBytes() : result.getBytes(), result.isPartial());
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Writes a converted lattice from the heap. The content has been compressed by the computation already,
+	 * so the request thread only copies it.
+	 * A partially adjusted lattice is marked by a header and is not cached by the clients.
+	 * 
+	 * @param response receiving the lattice.
+	 * @param format is the format which the lattice is converted to.
+	 * @param compressed specifies whether the content is gzip compressed.
+	 * @param content is the converted lattice, compressed if requested.
+	 * @param partial specifies whether the layout has been stopped by the deadline.
+	 * @throws IOException if the response cannot be written.
+	 */
+	private void writeContent(HttpServletResponse response, LatticeFormatType format, Boolean compressed, 
+			byte[] content, Boolean partial) throws IOException {
+		if(partial){
+			response.setHeader("Cache-Control", "no-store");
+			response.setHeader("X-Lattice-Partial", "true");
+		}
+		
+		OutputStream stream = this.openContent(response, format, compressed, content.length);
+		
+		stream.write(content);
+		stream.flush();
+	}
+	
+	/**
+	 * Writes a converted lattice from the cache outside of the heap without copying it to the heap.
+	 * 
+	 * @param response receiving the lattice.
+	 * @param format is the format which the lattice is converted to.
+	 * @param compressed specifies whether the content is gzip compressed.
+	 * @param entry is the pinned cache entry, which is released afterwards.
+	 * @throws IOException if the response cannot be written.
+	 */
+	private void writeEntry(HttpServletResponse response, LatticeFormatType format, Boolean compressed, 
+			LatticeSlabCache.Entry entry) throws IOException {
+		try {
+			OutputStream stream = this.openContent(response, format, compressed, entry.getLength());
+			
+			entry.writeTo(stream);
+			stream.flush();
+		} finally {
+			entry.release();
+		}
+	}
+	
+	/**
+	 * Sets the headers of a converted lattice and gets the stream receiving it.
+	 * 
+	 * @param response receiving the lattice.
+	 * @param format is the format which the lattice is converted to.
+	 * @param compressed specifies whether the content is gzip compressed.
+	 * @param length is the count of bytes of the content.
+	 * @return The stream receiving the content.
+	 * @throws IOException if the response cannot be written.
+	 */
+	private OutputStream openContent(HttpServletResponse response, LatticeFormatType format, Boolean compressed, int length) throws IOException {
+		response.setContentType(format.getContentType());
+		response.setContentLength(length);
+		
+		if(compressed)
+			response.setHeader("Content-Encoding", "gzip");
+		
+		return response.getOutputStream();
+	}
+	
+	/**
+	 * Executes the work of a request asynchronously on the worker pool.
+	 * A request is refused with 503 if the queue of the pool is full, and a request exceeding
+	 * its timeout cancels its deadline and is answered with 503 as well. The worker is never interrupted,
+	 * since its computation may be shared with other requests, the deadline stops the layout instead.
+	 * A computation cancelled before the lattice levels exist is answered with 503 too.
+	 * 
+	 * @param request which is processed asynchronously.
+	 * @param response receiving the result of the work.
+	 * @param deadline is the deadline of the request.
+	 * @param work computes and writes the response.
+	 * @throws ServletException if the work fails on a container without asynchronous support.
+	 * @throws IOException if the response cannot be written.
+	 */
+	private void execute(HttpServletRequest request, final HttpServletResponse response, final LatticeDeadline deadline, 
+			Callable<Object> work) throws ServletException, IOException {
+		//containers without asynchronous support compute the lattice on the request thread
+		if(!request.isAsyncSupported()){
+			try {
+				work.call();
+			} catch (IOException e) {
+				throw e;
+			} catch (CancellationException e) {
+				this.sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			} catch (Exception e) {
+				throw new ServletException(e);
+			}
+			return;
+		}
+		
+		final AsyncContext context = request.startAsync();
+		final AtomicBoolean completed = new AtomicBoolean(false);
+		final FutureTask<Object> task = new FutureTask<Object>(work){
+			protected void done(){
+				//a timed out request has been completed already
+				if(!completed.compareAndSet(false, true))
+					return;
+				
+				try {
+					this.get();
+				} catch (ExecutionException e) {
+					if(e.getCause() instanceof CancellationException){
+						sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+					} else {
+						log("Cannot process the lattice request", e.getCause());
+						sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+					}
+				} catch (CancellationException e) {
+				} catch (InterruptedException e) {
+				}
+				
+				context.complete();
+			}
+		};
+		
+		context.setTimeout(this.timeout);
+		context.addListener(new AsyncListener(){
+			public void onTimeout(AsyncEvent event) throws IOException {
+				if(completed.compareAndSet(false, true)){
+					deadline.cancel();
+					task.cancel(false);
+					sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+					context.complete();
+				}
+			}
+			
+			public void onComplete(AsyncEvent event) throws IOException {
+			}
+			
+			public void onError(AsyncEvent event) throws IOException {
+				//a disconnected client stops the layout at its next safe point
+				deadline.cancel();
+				task.cancel(false);
+			}
+			
+			public void onStartAsync(AsyncEvent event) throws IOException {
+			}
+		});
+		
+		try {
+			this.executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			//sheds the load while all workers are busy and the queue is full
+			if(completed.compareAndSet(false, true)){
+				sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				context.complete();
+			}
+		}
+	}
+	
+	/**
+	 * Sends an error which is neither cached by the clients nor by the proxies.
+	 * An unavailable service asks the client to retry later.
+	 * 
+	 * @param response receiving the error.
+	 * @param status is the http status code.
+	 */
+	private void sendError(HttpServletResponse response, int status){
+		if(response.isCommitted())
+			return;
+		
+		try {
+			response.setHeader("Cache-Control", "no-store");
+			
+			if(status == HttpServletResponse.SC_SERVICE_UNAVAILABLE)
+				response.setHeader("Retry-After", Integer.toString(retryAfter));
+			
+			response.sendError(status);
+		} catch (IOException e) {
+			this.log("Cannot send the error " + status, e);
+		}
+	}
+	
+	/**
+	 * Adjusts a lattice while its positions are written as server-sent events.
+	 * The initial positions are sent right away and each iteration of the layout sends the moved elements.
+	 * A lattice found in the caches, in the store or in the layout store is sent at once as the final event.
+	 * 
+	 * @param response receiving the events.
+	 * @param path is the path of the lattice file relative to the resources.
+	 * @param layout is the layout arranging the lattice elements.
+	 * @param deadline is the deadline of the request.
+	 * @throws IOException if the response cannot be written.
+	 */
+	private void writeProgress(HttpServletResponse response, String path, LatticeLayoutType layout, LatticeDeadline deadline) throws IOException {
+		String key = path + "/" + this.getVariant(layout, LatticeFormatType.Json, null);
+		byte[] payload = this.getCached(key, true);
+		File stored = payload == null && this.store != null ? this.store.find(key, false) : null;
+		
+		if(stored != null)
+			payload = this.readFile(stored);
+		
+		response.setContentType("text/event-stream");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		
+		LatticeProgressWriter writer = new LatticeProgressWriter(response.getOutputStream());
 		
-		//String latex =  lattice.saveAs(LatticeFormatType.Latex);
+		if(payload != null){
+			writer.finish(new String(payload, "UTF-8"));
+			return;
+		}
+		
+		//only a layout which has to be computed sends its progress
+		writer.finish(this.loadLattice(path, layout, deadline, writer));
+	}
+	
+	/**
+	 * Executes a batch asynchronously on a container thread started by the asynchronous context.
+	 * The lattices are computed on the worker pool, but the container thread blocks while it waits for each of them,
+	 * so a batch holds one container thread, which may come from the pool of the request threads, for its whole duration.
+	 * 
+	 * @param request which is processed asynchronously.
+	 * @param response receiving the lattices.
+	 * @param dimension is the dimension of the lattices.
+	 * @param numbers are the numbers of the lattices.
+	 * @param layout is the layout arranging the lattice elements.
+	 * @throws IOException if the response cannot be written on a container without asynchronous support.
+	 */
+	private void executeBatch(HttpServletRequest request, final HttpServletResponse response, final String dimension, 
+			final Vector<Integer> numbers, final LatticeLayoutType layout) throws IOException {
+		if(!request.isAsyncSupported()){
+			this.writeBatch(response, dimension, numbers, layout);
+			return;
+		}
+		
+		final AsyncContext context = request.startAsync();
+		
+		//a batch takes as long as its count of lattices, each lattice is bounded by its own deadline
+		context.setTimeout(0);
+		context.start(new Runnable(){
+			public void run(){
+				try {
+					writeBatch(response, dimension, numbers, layout);
+				} catch (IOException e) {
+					log("Cannot write the batch of the dimension " + dimension, e);
+				} finally {
+					context.complete();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Writes the lattices of a batch as newline delimited json in the requested order.
+	 * At most a window of lattices is computed ahead of the written one, so the memory stays bounded,
+	 * and each lattice is written as soon as it and all its predecessors are ready.
+	 * While the queue of the pool is full, the batch waits for its own lattices or for room in the queue
+	 * until the deadline of the next lattice, a batch getting no room at all is refused with 503.
+	 * <pre>
+	 * {@code
+	 * 	{"number":3,"lattice":[{"name":"1",...},...]}
+	 * 	{"number":4,"partial":true,"lattice":[{"name":"1",...},...]}
+	 * 	{"number":5,"error":"not found"}
+	 * 	{"number":6,"error":"busy"}
+	 * }
+	 * </pre>
+	 * 
+	 * @param response receiving the lattices.
+	 * @param dimension is the dimension of the lattices.
+	 * @param numbers are the numbers of the lattices.
+	 * @param layout is the layout arranging the lattice elements.
+	 * @throws IOException if the response cannot be written.
+	 */
+	private void writeBatch(HttpServletResponse response, String dimension, Vector<Integer> numbers, final LatticeLayoutType layout) throws IOException {
+		LinkedList<Future<LatticePayload>> window = new LinkedList<Future<LatticePayload>>();
+		LinkedList<LatticeDeadline> deadlines = new LinkedList<LatticeDeadline>();
+		int next = 0;
+		
+		response.setContentType("application/x-ndjson");
+		OutputStream stream = response.getOutputStream();
+		
+		try {
+			for(int i = 0; i < numbers.size(); i++){
+				for(; next < numbers.size() && next - i < this.batchWindow; next++){
+					final String path = "dim" + dimension + "/dim" + dimension + "_" + numbers.get(next);
+					final LatticeDeadline deadline = new LatticeDeadline(this.deadline);
+					FutureTask<LatticePayload> task = new FutureTask<LatticePayload>(new Callable<LatticePayload>(){
+						public LatticePayload call() throws Exception {
+							if(findSource(path) == null)
+								return null;
+							
+							return getPayload(path, layout, LatticeFormatType.Json, null, deadline);
+						}
+					});
+					
+					//a batch is slowed down instead of computing the lattices on its own thread while the queue is full
+					try {
+						this.executor.execute(task);
+					} catch (RejectedExecutionException e) {
+						if(!window.isEmpty())
+							break;
+						
+						//all workers are busy with other requests, so the batch waits for room in the queue
+						if(!this.executor.getQueue().offer(task, deadline.getRemaining(), TimeUnit.MILLISECONDS)){
+							if(i == 0){
+								this.sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+								return;
+							}
+							
+							task.cancel(false);
+						}
+					}
+					
+					window.add(task);
+					deadlines.add(deadline);
+				}
+				
+				String line = "{\"number\":" + numbers.get(i);
+				
+				try {
+					deadlines.removeFirst();
+					LatticePayload payload = window.removeFirst().get();
+					
+					if(payload != null){
+						stream.write((line + (payload.isPartial() ? ",\"partial\":true" : "") + ",\"lattice\":").getBytes("UTF-8"));
+						stream.write(payload.getBytes());
+						line = "";
+					}
+					else
+						line += ",\"error\":\"not found\"";
+				} catch (ExecutionException e) {
+					if(e.getCause() instanceof CancellationException){
+						line += ",\"error\":\"busy\"";
+					} else {
+						this.log("Cannot create the lattice " + dimension + "/" + numbers.get(i), e.getCause());
+						line += ",\"error\":\"failed\"";
+					}
+				} catch (CancellationException e) {
+					line += ",\"error\":\"busy\"";
+				}
+				
+				stream.write((line + "}\n").getBytes("UTF-8"));
+				stream.flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} finally {
+			//a disconnected client does not need the remaining lattices, the running ones may be shared
+			for(Future<LatticePayload> future : window)
+				future.cancel(false);
+			
+			//the running layouts stop at their next safe point
+			for(LatticeDeadline deadline : deadlines)
+				deadline.cancel();
+		}
+	}
+	
+	/**
+	 * Gets a converted lattice from the cache or computes it.
+	 * 
+	 * @param path is the path of the lattice file relative to the resources.
+	 * @param layout is the layout arranging the lattice elements.
+	 * @param format is the format which the lattice is converted to.
+	 * @param size is the size of the png images.
+	 * @param deadline is the deadline of the request.
+	 * @return The converted lattice.
+	 * @throws IOException if the lattice cannot be converted.
+	 */
+	private LatticePayload getPayload(String path, LatticeLayoutType layout, LatticeFormatType format, Integer size, 
+			LatticeDeadline deadline) throws IOException {
+		//identical requests are answered from the cache without loading and adjusting the lattice again
+		byte[] payload = this.getCached(path + "/" + this.getVariant(layout, format, size), true);
+		
+		if(payload != null)
+			return new LatticePayload(payload, false);
+		
+		return this.computePayload(path, layout, format, size, deadline);
+	}
+	
+	/**
+	 * Finds a converted lattice in the heap cache or in the cache outside of the heap.
+	 * 
+	 * @param key is the path of the lattice followed by its variant.
+	 * @param counted specifies whether the lookup is counted in the statistics of the heap cache.
+	 * @return The converted lattice or null if neither cache contains it.
+	 */
+	private byte[] getCached(String key, Boolean counted){
+		byte[] payload = counted ? this.cache.get(key) : this.cache.peek(key);
+		LatticeSlabCache.Entry entry = payload == null && this.slabCache != null ? this.slabCache.acquire(key) : null;
+		
+		if(entry != null){
+			try {
+				payload = entry.getBytes();
+			} finally {
+				entry.release();
+			}
+		}
+		
+		return payload;
+	}
+	
+	/**
+	 * Computes a converted lattice which has not been found in the cache.
+	 * Concurrent identical requests share a single computation, which runs until the deadline of the first request. 
+	 * A partially adjusted lattice is not cached, and a layout stopped by a cancelled request is repeated 
+	 * by the other requests whose deadline has not been reached yet.
+	 * 
+	 * @param path is the path of the lattice file relative to the resources.
+	 * @param layout is the layout arranging the lattice elements.
+	 * @param format is the format which the lattice is converted to.
+	 * @param size is the size of the png images.
+	 * @param deadline is the deadline of the request.
+	 * @return The converted lattice.
+	 * @throws IOException if the lattice cannot be converted.
+	 * @throws CancellationException if the deadline has been reached before the lattice levels were calculated.
+	 */
+	private LatticePayload computePayload(final String path, final LatticeLayoutType layout, final LatticeFormatType format, 
+			final Integer size, final LatticeDeadline deadline) throws IOException {
+		final String key = path + "/" + this.getVariant(layout, format, size);
+		
+		return this.coalescer.execute(key, deadline, new Callable<LatticePayload>(){
+			public LatticePayload call() throws Exception {
+				//the previous computation may have finished meanwhile
+				byte[] cached = getCached(key, false);
+				
+				if(cached != null)
+					return new LatticePayload(cached, getCompressed(key, cached, format), false);
+				
+				LatticePayload result = createPayload(path, layout, format, size, deadline);
+				
+				//the requests sharing the computation do not get a layout stopped by another request
+				if(result.isPartial() && deadline.isCancelled())
+					throw new CancellationException("The request has been cancelled");
+				
+				if(!result.isPartial()){
+					//with a cache outside of the heap, the heap cache is only a small front cache of the recent lattices
+					putCached(key, result.getBytes());
+					
+					if(result.getCompressedBytes() != null)
+						putCached(getContentKey(key, true), result.getCompressedBytes());
+					storePayload(key, result.getBytes(), result.getCompressedBytes());
+				}
+				
+				return result;
+			}
+		});
+	}
+	
+	/**
+	 * Puts a converted lattice into the heap cache and into the cache outside of the heap.
+	 * 
+	 * @param key is the path of the lattice followed by its variant.
+	 * @param payload is the converted lattice.
+	 */
+	private void putCached(String key, byte[] payload){
+		this.cache.put(key, payload);
+		
+		if(this.slabCache != null)
+			this.slabCache.put(key, payload);
+	}
+	
+	/**
+	 * Gets the compressed lattice of a cached lattice, which is compressed again only if it has been evicted.
+	 * 
+	 * @param key is the path of the lattice followed by its variant.
+	 * @param payload is the converted lattice.
+	 * @param format is the format which the lattice is converted to.
+	 * @return The gzip compressed lattice or null if the format is not compressed.
+	 * @throws IOException if the lattice cannot be compressed.
+	 */
+	private byte[] getCompressed(String key, byte[] payload, LatticeFormatType format) throws IOException {
+		if(format == LatticeFormatType.Png)
+			return null;
+		
+		byte[] compressed = this.getCached(this.getContentKey(key, true), false);
+		
+		if(compressed == null){
+			compressed = LatticePayloadStore.compress(payload);
+			this.putCached(this.getContentKey(key, true), compressed);
+		}
+		
+		return compressed;
+	}
+	
+	/**
+	 * Gets the cache key of the content of a converted lattice.
+	 * The compressed lattices are cached beside the uncompressed ones, so a cache hit is never compressed again.
+	 * 
+	 * @param key is the path of the lattice followed by its variant.
+	 * @param compressed specifies whether the content is gzip compressed.
+	 * @return The key of the content in the caches.
+	 */
+	private String getContentKey(String key, Boolean compressed){
+		return compressed ? key + ".gz" : key;
+	}
+	
+	/**
+	 * Gets the name of a representation of a lattice.
+	 * 
+	 * @param layout is the layout arranging the lattice elements.
+	 * @param format is the format which the lattice is converted to.
+	 * @param size is the size of the png images.
+	 * @return The name distinguishing the representations of the same lattice.
+	 */
+	private String getVariant(LatticeLayoutType layout, LatticeFormatType format, Integer size){
+		return LatticePayloadStore.getVariant(layout, format, size);
+	}
+	
+	/**
+	 * Loads, adjusts and converts a lattice.
+	 * 
+	 * @param path is the path of the lattice file relative to the resources.
+	 * @param layout is the layout arranging the lattice elements.
+	 * @param format is the format which the lattice is converted to.
+	 * @param size is the size of the png images.
+	 * @param deadline is the deadline of the request.
+	 * @return The converted lattice.
+	 * @throws IOException if the lattice cannot be converted.
+	 */
+	private LatticePayload createPayload(String path, LatticeLayoutType layout, LatticeFormatType format, Integer size, 
+			LatticeDeadline deadline) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Lattice lattice = this.loadLattice(path, layout, deadline, null);
+		
+		if(format == LatticeFormatType.Png)
+			new LatticePngFormatter(lattice, size).Format(stream);
+		else
+			lattice.saveTo(format, stream);
+		
+		//the textual formats are compressed once by the worker, never by the request threads
+		byte[] payload = stream.toByteArray();
+		
+		return new LatticePayload(payload, format != LatticeFormatType.Png ? LatticePayloadStore.compress(payload) : null, lattice.isPartial());
+	}
+	
+	/**
+	 * Writes a converted lattice to the store. The png images are not compressed any more.
+	 * A store which cannot be written is not used, so the requests are answered from the cache.
+	 * 
+	 * @param key is the relative path of the converted lattice.
+	 * @param payload is the converted lattice.
+	 * @param compressed is the gzip compressed lattice or null if the format is not compressed.
+	 */
+	private void storePayload(String key, byte[] payload, byte[] compressed){
+		if(this.store == null)
+			return;
+		
+		try {
+			this.store.write(key, payload, compressed);
+		} catch (IOException e) {
+			this.log("Cannot write to the store " + this.store.getDirectory(), e);
+		}
+	}
+	
+	/**
+	 * Sends a stored file. Tomcat sends it by the operating system if it supports it,
+	 * otherwise the file channel transfers it to the response.
+	 * 
+	 * @param request whose attributes announce the sendfile support.
+	 * @param response receiving the file.
+	 * @param format is the format of the converted lattice.
+	 * @param file is the stored file.
+	 * @param compressed specifies whether the file is compressed with gzip.
+	 * @throws IOException if the file cannot be sent.
+	 */
+	private void sendFile(HttpServletRequest request, HttpServletResponse response, LatticeFormatType format, File file, Boolean compressed) throws IOException {
+		long length = file.length();
+		
+		response.setContentType(format.getContentType());
+		response.setContentLength((int)length);
+		
+		if(compressed)
+			response.setHeader("Content-Encoding", "gzip");
+		
+		if(Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))){
+			request.setAttribute("org.apache.tomcat.sendfile.filename", file.getAbsolutePath());
+			request.setAttribute("org.apache.tomcat.sendfile.start", Long.valueOf(0));
+			request.setAttribute("org.apache.tomcat.sendfile.end", Long.valueOf(length));
+			return;
+		}
+		
+		FileInputStream input = new FileInputStream(file);
+		
+		try {
+			FileChannel channel = input.getChannel();
+			WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+			long position = 0;
+			
+			while(position < length){
+				long count = channel.transferTo(position, length - position, output);
+				
+				if(count <= 0)
+					break;
+				
+				position += count;
+			}
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Reads a stored file into the heap.
+	 * 
+	 * @param file is the stored file.
+	 * @return The content of the file.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private byte[] readFile(File file) throws IOException {
+		DataInputStream input = new DataInputStream(new FileInputStream(file));
+		
+		try {
+			byte[] bytes = new byte[(int)file.length()];
+			
+			input.readFully(bytes);
+			return bytes;
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Returns true if the client accepts gzip compressed content.
+	 * 
+	 * @param request containing the accept encoding header.
+	 * @return True whether the content can be sent compressed.
+	 */
+	private Boolean acceptsGzip(HttpServletRequest request){
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		
+		if(acceptEncoding == null)
+			return false;
+		
+		for(String value : acceptEncoding.split(",")){
+			String[] parts = value.split(";");
+			String name = parts[0].trim();
+			
+			if(!name.equalsIgnoreCase("gzip") && !name.equalsIgnoreCase("x-gzip") && !name.equals("*"))
+				continue;
+			
+			for(int i = 1; i < parts.length; i++){
+				String parameter = parts[i].trim();
+				
+				//a zero quality refuses the encoding
+				if(parameter.startsWith("q=") && parameter.substring(2).trim().matches("0(\\.0*)?"))
+					return false;
+			}
+			
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Writes the counters of the cache as json.
+	 * 
+	 * @param response receiving the counters.
+	 * @throws IOException if the response cannot be written.
+	 */
+	private void writeStatistics(HttpServletResponse response) throws IOException {
+		response.setContentType(LatticeFormatType.Json.getContentType());
+		response.getWriter().write("{\"hits\":" + this.cache.getHits() + 
+				",\"misses\":" + this.cache.getMisses() + 
+				",\"evictions\":" + this.cache.getEvictions() + 
+				",\"count\":" + this.cache.getCount() + 
+				",\"running\":" + this.coalescer.getCount() + 
+				",\"size\":" + this.cache.getSize() + 
+				",\"capacity\":" + this.cache.getCapacity() + 
+				",\"offHeap\":" + (this.slabCache == null ? "null" : "{\"hits\":" + this.slabCache.getHits() + 
+						",\"misses\":" + this.slabCache.getMisses() + 
+						",\"evictions\":" + this.slabCache.getEvictions() + 
+						",\"count\":" + this.slabCache.getCount() + 
+						",\"size\":" + this.slabCache.getSize() + 
+						",\"allocated\":" + this.slabCache.getAllocated() + 
+						",\"capacity\":" + this.slabCache.getCapacity() + "}") + 
+				",\"layouts\":" + (this.layoutStore != null ? this.layoutStore.getCount() : 0) + "}");
+	}
+	
+	/**
+	 * Finds the file containing a lattice. The archive of the dimension is preferred to the text file.
+	 * 
+	 * @param path is the path of the lattice file relative to the resources, like dim6/dim6_3.
+	 * @return The archive or the text file, or null if the lattice does not exist.
+	 * @throws IOException if the archive cannot be read.
+	 */
+	private File findSource(String path) throws IOException {
+		LatticeArchive archive = this.getArchive(path.substring(3, path.indexOf('/')));
+		
+		if(archive != null && archive.contains(Integer.parseInt(path.substring(path.lastIndexOf('_') + 1))))
+			return archive.getFile();
+		
+		File file = new File(this.getServletContext().getRealPath("/Resources/" + path));
+		
+		return file.isFile() ? file : null;
+	}
+	
+	/**
+	 * Reads a lattice from the archive of its dimension or from its text file.
+	 * 
+	 * @param path is the path of the lattice file relative to the resources, like dim6/dim6_3.
+	 * @return A new lattice object.
+	 * @throws IOException if the archive cannot be read.
+	 */
+	private Lattice readLattice(String path) throws IOException {
+		LatticeArchive archive = this.getArchive(path.substring(3, path.indexOf('/')));
+		Lattice lattice = archive != null ? archive.load(Integer.parseInt(path.substring(path.lastIndexOf('_') + 1))) : null;
+		
+		if(lattice == null)
+			lattice = Lattice.loadFromFile(this.getServletContext().getRealPath("/Resources/" + path));
+		
+		return lattice;
+	}
+	
+	/**
+	 * Gets the archive of a dimension, which is opened once and shared by all requests.
+	 * 
+	 * @param dimension is the dimension of the lattices.
+	 * @return The archive or null if the dimension has got no archive.
+	 * @throws IOException if the archive cannot be opened.
+	 */
+	private LatticeArchive getArchive(String dimension) throws IOException {
+		LatticeArchive archive = this.archives.get(dimension);
+		
+		if(archive != null)
+			return archive;
+		
+		File file = new File(this.getServletContext().getRealPath("/Resources/dim" + dimension + LatticeArchive.extension));
+		
+		if(!file.isFile())
+			return null;
+		
+		archive = new LatticeArchive(file);
+		
+		//another request may have opened the same archive meanwhile
+		LatticeArchive opened = this.archives.putIfAbsent(dimension, archive);
+		
+		if(opened != null){
+			archive.close();
+			return opened;
+		}
+		
+		return archive;
+	}
+	
+	/**
+	 * Loads a lattice from the resources and places its elements at the stored positions.
+	 * A lattice without stored positions is adjusted until the deadline and its complete layout is stored.
+	 * 
+	 * @param path is the path of the lattice file relative to the resources.
+	 * @param layout is the layout arranging the lattice elements.
+	 * @param deadline is the deadline of the request.
+	 * @param listener observes the layout while it is computed or is null.
+	 * @return The adjusted lattice.
+	 */
+	private Lattice loadLattice(String path, LatticeLayoutType layout, LatticeDeadline deadline, 
+			ILatticeLayoutListener listener) throws IOException {
+		Lattice lattice = this.readLattice(path);
+		
+		//the search of the canonical form stops at the deadline as well as the layout
+		lattice.setDeadline(deadline);
+		
+		//an isomorphic lattice may have been adjusted already
+		ByteBuffer record = this.layoutStore != null ? this.layoutStore.get(lattice.getCanonicalForm(), layout) : null;
+		
+		if(record != null){
+			lattice.adjust(new LatticeStoredLayout(record, lattice.getCanonicalForm()));
+			return lattice;
+		}
+		
+		lattice.setLayoutListener(listener);
+		lattice.adjust(layout);
+		
+		if(this.layoutStore != null && !lattice.isPartial())
+			this.layoutStore.put(lattice.getCanonicalForm(), layout);
+		
+		return lattice;
+	}
+	
+	/**
+	 * Returns true if the client has got the current representation.
+	 * The entity tag takes precedence over the modification date.
+	 * 
+	 * @param request containing the conditional headers.
+	 * @param tag is the entity tag of the current representation.
+	 * @param lastModified is the modification date of the source file in whole seconds.
+	 * @return True whether the client may use its cached representation.
+	 */
+	private Boolean isNotModified(HttpServletRequest request, String tag, long lastModified){
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		
+		if(ifNoneMatch != null){
+			for(String value : ifNoneMatch.split(",")){
+				value = value.trim();
+				
+				if(value.equals("*") || value.equals(tag) || value.equals("W/" + tag))
+					return true;
+			}
+			
+			return false;
+		}
+		
+		try {
+			long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+			
+			return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+		} catch (IllegalArgumentException e) {
+			//an invalid date is ignored
+			return false;
+		}
+	}
+	
+	/**
+	 * Returns true if the parameter is a small non-negative number.
+	 * 
+	 * @param value is the request parameter.
+	 * @return True whether the parameter can be used in a resource path.
+	 */
+	private Boolean isNumber(String value){
+		return value != null && value.matches("[0-9]{1,5}");
+	}
+	
+	/**
+	 * Parses a range like 3..10 or a list like 1,4,7 of lattice numbers.
+	 * 
+	 * @param value is the number parameter of the request.
+	 * @return The numbers or null if the parameter is invalid or contains too many numbers.
+	 */
+	private Vector<Integer> parseNumbers(String value){
+		Vector<Integer> numbers = new Vector<Integer>();
+		
+		if(value.matches("[0-9]{1,5}\\.\\.[0-9]{1,5}")){
+			int from = Integer.parseInt(value.substring(0, value.indexOf("..")));
+			int to = Integer.parseInt(value.substring(value.indexOf("..") + 2));
+			
+			if(to < from || to - from >= maxBatchSize)
+				return null;
+			
+			for(int i = from; i <= to; i++)
+				numbers.add(i);
+			
+			return numbers;
+		}
+		
+		for(String number : value.split(",")){
+			if(!this.isNumber(number.trim()) || numbers.size() == maxBatchSize)
+				return null;
+			
+			numbers.add(Integer.parseInt(number.trim()));
+		}
+		
+		return numbers;
+	}
+	
+	/**
+	 * Parses the requested image size.
+	 * 
+	 * @param value is the size parameter of the request.
+	 * @return The image size or the default size if the parameter is missing or invalid.
+	 */
+	private Integer parseSize(String value){
+		if(this.isNumber(value))
+			return Math.max(LatticePngFormatter.minSize, Math.min(LatticePngFormatter.maxSize, Integer.parseInt(value)));
 		
-		response.setContentType("application/json");
-		response.getOutputStream().print(lattice.saveAs(LatticeFormatType.Json));
+		return LatticePngFormatter.defaultSize;
 	}
 
 	/**